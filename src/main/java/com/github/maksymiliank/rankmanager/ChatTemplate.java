@@ -0,0 +1,107 @@
+package com.github.maksymiliank.rankmanager;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class ChatTemplate {
+
+    public static final String RANK_NAME = "{rank}";
+    public static final String RANK_DISPLAY_NAME = "{display_name}";
+    public static final String PLAYER = "{player}";
+    public static final String MESSAGE = "{message}";
+
+    private static final int PLAYER_PLACEHOLDER = 0;
+    private static final int MESSAGE_PLACEHOLDER = 1;
+
+    private final String[] literals;
+    private final int[] placeholders;
+    private final int literalsLength;
+
+    private ChatTemplate(String[] literals, int[] placeholders) {
+        this.literals = literals;
+        this.placeholders = placeholders;
+
+        int length = 0;
+        for (var literal : literals) {
+            length += literal.length();
+        }
+        this.literalsLength = length;
+    }
+
+    static ChatTemplate compile(String format, String rankName, String rankDisplayName) {
+        var literals = new ArrayList<String>();
+        var placeholders = new ArrayList<Integer>();
+        var literal = new StringBuilder();
+
+        int i = 0;
+        while (i < format.length()) {
+            int open = format.indexOf('{', i);
+            int close = open < 0 ? -1 : format.indexOf('}', open);
+            if (close < 0) {
+                literal.append(format, i, format.length());
+                break;
+            }
+            open = format.lastIndexOf('{', close);
+
+            literal.append(format, i, open);
+            var token = format.substring(open, close + 1);
+            switch (token) {
+                case RANK_NAME:
+                    literal.append(rankName);
+                    break;
+                case RANK_DISPLAY_NAME:
+                    literal.append(rankDisplayName);
+                    break;
+                case PLAYER:
+                case MESSAGE:
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                    placeholders.add(token.equals(PLAYER) ? PLAYER_PLACEHOLDER : MESSAGE_PLACEHOLDER);
+                    break;
+                default:
+                    literal.append(token);
+            }
+            i = close + 1;
+        }
+        literals.add(literal.toString());
+
+        return new ChatTemplate(literals.toArray(new String[0]), toArray(placeholders));
+    }
+
+    public String getPrefix() {
+        return literals[0];
+    }
+
+    public int estimateLength(CharSequence player, CharSequence message) {
+        int length = literalsLength;
+        for (int placeholder : placeholders) {
+            length += placeholder == PLAYER_PLACEHOLDER ? player.length() : message.length();
+        }
+        return length;
+    }
+
+    public StringBuilder render(StringBuilder out, CharSequence player, CharSequence message) {
+        for (int i = 0; i < placeholders.length; i++) {
+            out.append(literals[i]);
+            out.append(placeholders[i] == PLAYER_PLACEHOLDER ? player : message);
+        }
+        return out.append(literals[placeholders.length]);
+    }
+
+    public CharBuffer render(CharBuffer out, CharSequence player, CharSequence message) {
+        for (int i = 0; i < placeholders.length; i++) {
+            out.put(literals[i]);
+            out.append(placeholders[i] == PLAYER_PLACEHOLDER ? player : message);
+        }
+        return out.put(literals[placeholders.length]);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        var array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.maksymiliank.rankmanager;
+
+import java.util.List;
+import java.util.Optional;
+
+public final class PermissionDecision {
+
+    public enum Reason {
+        GRANTED,
+        NEGATED,
+        NOT_GRANTED
+    }
+
+    private final long sequence;
+    private final long timestamp;
+    private final String player;
+    private final List<Integer> rankIds;
+    private final String permission;
+    private final boolean granted;
+    private final Integer decidingRankId;
+    private final Reason reason;
+
+    PermissionDecision(long sequence, long timestamp, String player, List<Integer> rankIds, String permission, boolean granted,
+                       Integer decidingRankId, Reason reason) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.player = player;
+        this.rankIds = rankIds;
+        this.permission = permission;
+        this.granted = granted;
+        this.decidingRankId = decidingRankId;
+        this.reason = reason;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Optional<String> getPlayer() {
+        return Optional.ofNullable(player);
+    }
+
+    public List<Integer> getRankIds() {
+        return rankIds;
+    }
+
+    public String getPermission() {
+        return permission;
+    }
+
+    public boolean isGranted() {
+        return granted;
+    }
+
+    public Optional<Integer> getDecidingRankId() {
+        return Optional.ofNullable(decidingRankId);
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return "PermissionDecision{" +
+                "sequence=" + sequence +
+                ", player=" + player +
+                ", rankIds=" + rankIds +
+                ", permission='" + permission + '\'' +
+                ", granted=" + granted +
+                ", decidingRankId=" + decidingRankId +
+                ", reason=" + reason +
+                '}';
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.maksymiliank.rankmanager;
+
+import java.util.Collection;
+
+public final class PermissionFilter {
+
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    private static final double LN_2 = Math.log(2);
+
+    private final long[] words;
+    private final int bitMask;
+    private final int hashFunctionCount;
+    private final int elementCount;
+
+    private PermissionFilter(long[] words, int hashFunctionCount, int elementCount) {
+        this.words = words;
+        this.bitMask = words.length * Long.SIZE - 1;
+        this.hashFunctionCount = hashFunctionCount;
+        this.elementCount = elementCount;
+    }
+
+    static PermissionFilter of(Collection<String> permissions, double falsePositiveRate) {
+        validateFalsePositiveRate(falsePositiveRate);
+
+        int n = Math.max(permissions.size(), 1);
+        long requiredBits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (LN_2 * LN_2));
+        int bitCount = (int) Math.min(Math.max(nextPowerOfTwo(requiredBits), Long.SIZE), 1 << 30);
+        int hashFunctionCount = (int) Math.max(1, Math.round((double) bitCount / n * LN_2));
+
+        var filter = new PermissionFilter(new long[bitCount / Long.SIZE], Math.min(hashFunctionCount, 16),
+                permissions.size());
+        permissions.forEach(filter::put);
+        return filter;
+    }
+
+    static void validateFalsePositiveRate(double falsePositiveRate) {
+        if (!(falsePositiveRate > 0.0 && falsePositiveRate < 1.0)) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1 (exclusive)");
+        }
+    }
+
+    public boolean mightContain(String permission) {
+        long hash = mix(permission.hashCode());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+
+        for (int i = 0; i < hashFunctionCount; i++) {
+            int bit = (h1 + i * h2) & bitMask;
+            if ((words[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getHashFunctionCount() {
+        return hashFunctionCount;
+    }
+
+    public int getBitCount() {
+        return words.length * Long.SIZE;
+    }
+
+    public int getSizeInBytes() {
+        return words.length * Long.BYTES;
+    }
+
+    public double getExpectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashFunctionCount * elementCount / getBitCount()), hashFunctionCount);
+    }
+
+    private void put(String permission) {
+        long hash = mix(permission.hashCode());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+
+        for (int i = 0; i < hashFunctionCount; i++) {
+            int bit = (h1 + i * h2) & bitMask;
+            words[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private static long mix(int hashCode) {
+        long h = hashCode * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static long nextPowerOfTwo(long value) {
+        return value <= 1 ? 1 : Long.highestOneBit(value - 1) << 1;
+    }
+}
@@ -0,0 +1,170 @@
+package com.github.maksymiliank.rankmanager;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+public final class PermissionTracer {
+
+    private final AtomicReferenceArray<PermissionDecision> buffer;
+    private final int mask;
+    private final int sampleEvery;
+    private final Predicate<String> permissionPredicate;
+    private final boolean onlyDenied;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong read = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private PermissionTracer(int capacity, int sampleEvery, Predicate<String> permissionPredicate, boolean onlyDenied) {
+        this.buffer = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.sampleEvery = sampleEvery;
+        this.permissionPredicate = permissionPredicate;
+        this.onlyDenied = onlyDenied;
+    }
+
+    public List<PermissionDecision> drain() {
+        var decisions = new ArrayList<PermissionDecision>();
+
+        long from = read.get();
+        long to = written.get();
+        if (to - from > buffer.length()) {
+            dropped.addAndGet(to - from - buffer.length());
+            from = to - buffer.length();
+        }
+
+        long sequence = from;
+        for (; sequence < to; sequence++) {
+            var decision = buffer.get((int) sequence & mask);
+            if (decision == null || decision.getSequence() < sequence) {
+                break;
+            } else if (decision.getSequence() > sequence) {
+                dropped.incrementAndGet();
+                continue;
+            }
+            decisions.add(decision);
+        }
+
+        read.accumulateAndGet(sequence, Math::max);
+        return decisions;
+    }
+
+    public long getRecordedCount() {
+        return written.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public int getCapacity() {
+        return buffer.length();
+    }
+
+    boolean trace(String player, List<Rank> ranks, String permission, boolean granted) {
+        if ((onlyDenied && granted) || !sampled() || !permissionPredicate.test(permission)) {
+            return granted;
+        }
+
+        var expected = granted ? PermissionDecision.Reason.GRANTED : PermissionDecision.Reason.NEGATED;
+        var rankIds = new ArrayList<Integer>(ranks.size());
+        Decider decider = null;
+        for (var rank : ranks) {
+            rankIds.add(rank.getId());
+            var candidate = explain(rank, permission, new HashSet<>());
+            if (decider == null || (decider.reason != expected && candidate.reason == expected)) {
+                decider = candidate;
+            }
+        }
+
+        long sequence = written.getAndIncrement();
+        buffer.set((int) sequence & mask, new PermissionDecision(sequence, System.currentTimeMillis(), player,
+                List.copyOf(rankIds), permission, granted, decider.rank == null ? null : decider.rank.getId(),
+                decider.reason));
+        return granted;
+    }
+
+    private boolean sampled() {
+        return sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0;
+    }
+
+    private static Decider explain(Rank rank, String permission, Set<Rank> visited) {
+        if (rank.negatesPermission(permission)) {
+            return new Decider(rank, PermissionDecision.Reason.NEGATED);
+        } else if (rank.grantsPermission(permission)) {
+            return new Decider(rank, PermissionDecision.Reason.GRANTED);
+        }
+
+        Decider negated = null;
+        for (var parent : rank.getParents()) {
+            if (visited.add(parent)) {
+                var decider = explain(parent, permission, visited);
+                if (decider.reason == PermissionDecision.Reason.GRANTED) {
+                    return decider;
+                } else if (decider.reason == PermissionDecision.Reason.NEGATED && negated == null) {
+                    negated = decider;
+                }
+            }
+        }
+
+        return negated != null ? negated : new Decider(null, PermissionDecision.Reason.NOT_GRANTED);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private static final class Decider {
+
+        private final Rank rank;
+        private final PermissionDecision.Reason reason;
+
+        private Decider(Rank rank, PermissionDecision.Reason reason) {
+            this.rank = rank;
+            this.reason = reason;
+        }
+    }
+
+    public static final class Builder {
+
+        private int capacity = 1024;
+        private int sampleEvery = 1;
+        private Predicate<String> permissionPredicate = p -> true;
+        private boolean onlyDenied;
+
+        private Builder() {}
+
+        public Builder capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        public Builder sampleEvery(int sampleEvery) {
+            this.sampleEvery = sampleEvery;
+            return this;
+        }
+
+        public Builder permissionPredicate(Predicate<String> permissionPredicate) {
+            this.permissionPredicate = permissionPredicate;
+            return this;
+        }
+
+        public Builder onlyDenied(boolean onlyDenied) {
+            this.onlyDenied = onlyDenied;
+            return this;
+        }
+
+        public PermissionTracer build() {
+            if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+                throw new IllegalArgumentException("Tracer capacity must be a positive power of two");
+            } else if (sampleEvery <= 0) {
+                throw new IllegalArgumentException("Tracer sample rate must be positive");
+            }
+
+            return new PermissionTracer(capacity, sampleEvery, permissionPredicate, onlyDenied);
+        }
+    }
+}
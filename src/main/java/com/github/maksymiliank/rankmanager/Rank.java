@@ -1,35 +1,61 @@
 package com.github.maksymiliank.rankmanager;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class Rank {
 
+    public static final String DEFAULT_TRACK = "default";
+
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicReference<RankManager> manager = new AtomicReference<>();
 
     private final int id;
+    private final String track;
     private final List<String> rankPermissions;
     private final List<String> rankNegatedPermissions;
+    private final List<Integer> inheritedRanks;
 
     private int level;
     private String name;
     private String displayName;
     private String chatFormat;
     private Set<String> effectivePermissions = Set.of();
-
-    private Rank(int id, List<String> rankPermissions, List<String> rankNegatedPermissions, int level, String name,
-                String displayName, String chatFormat) {
+    private volatile ChatTemplate chatTemplate;
+    private volatile PermissionFilter permissionFilter = PermissionFilter.of(Set.of(),
+            PermissionFilter.DEFAULT_FALSE_POSITIVE_RATE);
+    private volatile List<Rank> parents = List.of();
+    private volatile PermissionTracer tracer;
+
+    private Rank(int id, String track, List<String> rankPermissions, List<String> rankNegatedPermissions,
+                 List<Integer> inheritedRanks, int level, String name, String displayName, String chatFormat) {
         this.id = id;
+        this.track = track;
         this.rankPermissions = rankPermissions;
         this.rankNegatedPermissions = rankNegatedPermissions;
+        this.inheritedRanks = inheritedRanks;
         this.level = level;
         this.name = name;
         this.displayName = displayName;
         this.chatFormat = chatFormat;
+        this.chatTemplate = ChatTemplate.compile(chatFormat, name, displayName);
     }
 
     public boolean hasPermission(String permission) {
+        var tracer = this.tracer;
+        if (tracer != null) {
+            return tracer.trace(null, List.of(this), permission, hasEffectivePermission(permission));
+        }
+        return hasEffectivePermission(permission);
+    }
+
+    private boolean hasEffectivePermission(String permission) {
+        if (!permissionFilter.mightContain(permission)) {
+            return false;
+        }
+
         lock.readLock().lock();
         try {
             return effectivePermissions.contains(permission);
@@ -42,6 +68,10 @@ public class Rank {
         return id;
     }
 
+    public String getTrack() {
+        return track;
+    }
+
     public List<String> getRankPermissions() {
         lock.readLock().lock();
         try {
@@ -60,7 +90,25 @@ public class Rank {
         }
     }
 
+    public List<Integer> getInheritedRanks() {
+        lock.readLock().lock();
+        try {
+            return List.copyOf(inheritedRanks);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     public int getLevel() {
+        var rankManager = manager.get();
+        if (rankManager != null) {
+            var ladder = rankManager.getLadder();
+            var level = ladder == null ? null : ladder.getLevel(this);
+            if (level != null) {
+                return level;
+            }
+        }
+
         lock.readLock().lock();
         try {
             return level;
@@ -96,6 +144,10 @@ public class Rank {
         }
     }
 
+    public ChatTemplate getChatTemplate() {
+        return chatTemplate;
+    }
+
     public Set<String> getEffectivePermissions() {
         lock.readLock().lock();
         try {
@@ -105,7 +157,74 @@ public class Rank {
         }
     }
 
-    void modify(RankModification rankModification) {
+    public PermissionFilter getPermissionFilter() {
+        return permissionFilter;
+    }
+
+    boolean grantsPermission(String permission) {
+        lock.readLock().lock();
+        try {
+            return rankPermissions.contains(permission);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean negatesPermission(String permission) {
+        lock.readLock().lock();
+        try {
+            return rankNegatedPermissions.contains(permission);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Rank> getParents() {
+        return parents;
+    }
+
+    void resetParents(List<Rank> parents) {
+        this.parents = List.copyOf(parents);
+    }
+
+    boolean attach(RankManager rankManager) {
+        return manager.compareAndSet(null, rankManager);
+    }
+
+    boolean isManagedBy(RankManager rankManager) {
+        return manager.get() == rankManager;
+    }
+
+    void detach(RankManager rankManager) {
+        manager.compareAndSet(rankManager, null);
+    }
+
+    void setTracer(PermissionTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    int levelUnlocked() {
+        return level;
+    }
+
+    String nameUnlocked() {
+        return name;
+    }
+
+    List<String> rankPermissionsUnlocked() {
+        return rankPermissions;
+    }
+
+    List<String> rankNegatedPermissionsUnlocked() {
+        return rankNegatedPermissions;
+    }
+
+    List<Integer> inheritedRanksUnlocked() {
+        return inheritedRanks;
+    }
+
+    void modify(RankModification rankModification, Set<String> effectivePermissions,
+                PermissionFilter permissionFilter) {
         lock.writeLock().lock();
         try {
             if (rankModification.getLevel().isPresent()) {
@@ -124,20 +243,35 @@ public class Rank {
                 chatFormat = rankModification.getChatFormat().get();
             }
 
-            rankPermissions.removeAll(rankModification.getRemovedPermissions());
-            rankPermissions.addAll(rankModification.getAddedPermissions());
+            if (rankModification.getName().isPresent() || rankModification.getDisplayName().isPresent()
+                    || rankModification.getChatFormat().isPresent()) {
+                chatTemplate = ChatTemplate.compile(chatFormat, name, displayName);
+            }
+
+            var newPermissions = rankModification.applyToPermissions(rankPermissions);
+            rankPermissions.clear();
+            rankPermissions.addAll(newPermissions);
 
-            rankNegatedPermissions.removeAll(rankModification.getRemovedNegatedPermissions());
-            rankNegatedPermissions.addAll(rankModification.getAddedNegatedPermissions());
+            var newNegatedPermissions = rankModification.applyToNegatedPermissions(rankNegatedPermissions);
+            rankNegatedPermissions.clear();
+            rankNegatedPermissions.addAll(newNegatedPermissions);
+
+            var newInheritedRanks = rankModification.applyToInheritedRanks(inheritedRanks);
+            inheritedRanks.clear();
+            inheritedRanks.addAll(newInheritedRanks);
+
+            this.effectivePermissions = effectivePermissions;
+            this.permissionFilter = permissionFilter;
         } finally {
             lock.writeLock().unlock();
         }
     }
 
-    void resetEffectivePermissions(Collection<String> effectivePermissions) {
+    void resetEffectivePermissions(Set<String> effectivePermissions, PermissionFilter permissionFilter) {
         lock.writeLock().lock();
         try {
-            this.effectivePermissions = Set.copyOf(effectivePermissions);
+            this.effectivePermissions = effectivePermissions;
+            this.permissionFilter = permissionFilter;
         } finally {
             lock.writeLock().unlock();
         }
@@ -158,8 +292,10 @@ public class Rank {
 
         private final List<String> rankPermissions = new ArrayList<>();
         private final List<String> rankNegatedPermissions = new ArrayList<>();
+        private final List<Integer> inheritedRanks = new ArrayList<>();
 
         private Integer id;
+        private String track = DEFAULT_TRACK;
         private Integer level;
         private String name;
         private String displayName;
@@ -177,11 +313,21 @@ public class Rank {
             return this;
         }
 
+        public Builder inheritedRanks(Collection<Integer> inheritedRanks) {
+            this.inheritedRanks.addAll(inheritedRanks);
+            return this;
+        }
+
         public Builder id(int id) {
             this.id = id;
             return this;
         }
 
+        public Builder track(String track) {
+            this.track = track;
+            return this;
+        }
+
         public Builder level(int level) {
             this.level = level;
             return this;
@@ -203,11 +349,13 @@ public class Rank {
         }
 
         public Rank build() {
-            if (id == null || level == null || name == null || displayName == null || chatFormat == null) {
+            if (id == null || track == null || level == null || name == null || displayName == null
+                    || chatFormat == null) {
                 throw new BuilderException();
             }
 
-            return new Rank(id, rankPermissions, rankNegatedPermissions, level, name, displayName, chatFormat);
+            return new Rank(id, track, rankPermissions, rankNegatedPermissions, inheritedRanks, level, name,
+                    displayName, chatFormat);
         }
     }
 }
@@ -0,0 +1,85 @@
+package com.github.maksymiliank.rankmanager;
+
+import java.util.*;
+
+final class RankCombination {
+
+    private final List<Integer> key;
+    private final List<Rank> ranks;
+
+    private int players;
+    private volatile Set<String> effectivePermissions = Set.of();
+    private volatile PermissionFilter permissionFilter;
+
+    RankCombination(List<Integer> key, List<Rank> ranks, double filterFalsePositiveRate) {
+        this.key = key;
+        this.ranks = ranks;
+
+        recalculate(filterFalsePositiveRate);
+    }
+
+    static List<Integer> keyOf(Collection<Rank> ranks) {
+        var ids = new ArrayList<Integer>(ranks.size());
+        ranks.forEach(r -> ids.add(r.getId()));
+        Collections.sort(ids);
+        return List.copyOf(ids);
+    }
+
+    boolean hasPermission(String permission) {
+        return permissionFilter.mightContain(permission) && effectivePermissions.contains(permission);
+    }
+
+    List<Integer> getKey() {
+        return key;
+    }
+
+    List<Rank> getRanks() {
+        return ranks;
+    }
+
+    Optional<Rank> getRank(String track) {
+        for (var rank : ranks) {
+            if (rank.getTrack().equals(track)) {
+                return Optional.of(rank);
+            }
+        }
+        return Optional.empty();
+    }
+
+    boolean contains(Rank rank) {
+        return ranks.contains(rank);
+    }
+
+    Set<String> getEffectivePermissions() {
+        return effectivePermissions;
+    }
+
+    PermissionFilter getPermissionFilter() {
+        return permissionFilter;
+    }
+
+    void retain() {
+        players++;
+    }
+
+    boolean release() {
+        return --players == 0;
+    }
+
+    void recalculate(double filterFalsePositiveRate) {
+        if (ranks.size() == 1) {
+            var rank = ranks.get(0);
+            effectivePermissions = rank.getEffectivePermissions();
+            permissionFilter = rank.getPermissionFilter();
+            return;
+        }
+
+        var union = new HashSet<String>();
+        ranks.forEach(r -> union.addAll(r.getEffectivePermissions()));
+
+        var permissions = Set.copyOf(union);
+        var filter = PermissionFilter.of(permissions, filterFalsePositiveRate);
+        effectivePermissions = permissions;
+        permissionFilter = filter;
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.maksymiliank.rankmanager;
+
+import java.util.*;
+
+final class RankLadder {
+
+    private final Map<String, NavigableMap<Integer, Rank>> tracks;
+    private final List<Rank> ranks;
+    private final Map<Rank, Integer> levels;
+
+    RankLadder(Map<String, TreeMap<Integer, Rank>> tracks) {
+        var unmodifiableTracks = new HashMap<String, NavigableMap<Integer, Rank>>();
+        var levels = new HashMap<Rank, Integer>();
+        var ranks = new ArrayList<Rank>();
+        tracks.forEach((track, trackRanks) -> {
+            if (!trackRanks.isEmpty()) {
+                unmodifiableTracks.put(track, Collections.unmodifiableNavigableMap(trackRanks));
+                trackRanks.forEach((level, rank) -> {
+                    levels.put(rank, level);
+                    ranks.add(rank);
+                });
+            }
+        });
+        ranks.sort(Comparator.<Rank>comparingInt(levels::get).thenComparing(Rank::getTrack));
+
+        this.tracks = unmodifiableTracks;
+        this.ranks = Collections.unmodifiableList(ranks);
+        this.levels = levels;
+    }
+
+    static RankLadder empty() {
+        return new RankLadder(Map.of());
+    }
+
+    RankLadder with(int level, Rank rank) {
+        var newTracks = copyTracks();
+        newTracks.computeIfAbsent(rank.getTrack(), t -> new TreeMap<>()).put(level, rank);
+        return new RankLadder(newTracks);
+    }
+
+    RankLadder without(Rank rank) {
+        var newTracks = copyTracks();
+        var trackRanks = newTracks.get(rank.getTrack());
+        if (trackRanks != null) {
+            trackRanks.remove(levels.get(rank), rank);
+        }
+        return new RankLadder(newTracks);
+    }
+
+    NavigableMap<Integer, Rank> getTrack(String track) {
+        return tracks.getOrDefault(track, Collections.emptyNavigableMap());
+    }
+
+    Collection<Rank> values() {
+        return ranks;
+    }
+
+    Integer getLevel(Rank rank) {
+        return levels.get(rank);
+    }
+
+    Optional<Rank> getHigherRank(Rank rank) {
+        var level = levels.get(rank);
+        var entry = level == null ? null : getTrack(rank.getTrack()).higherEntry(level);
+        return entry == null ? Optional.empty() : Optional.of(entry.getValue());
+    }
+
+    Optional<Rank> getLowerRank(Rank rank) {
+        var level = levels.get(rank);
+        var entry = level == null ? null : getTrack(rank.getTrack()).lowerEntry(level);
+        return entry == null ? Optional.empty() : Optional.of(entry.getValue());
+    }
+
+    boolean containsLevel(String track, int level) {
+        return getTrack(track).containsKey(level);
+    }
+
+    private Map<String, TreeMap<Integer, Rank>> copyTracks() {
+        var copy = new HashMap<String, TreeMap<Integer, Rank>>();
+        tracks.forEach((track, trackRanks) -> copy.put(track, new TreeMap<>(trackRanks)));
+        return copy;
+    }
+}
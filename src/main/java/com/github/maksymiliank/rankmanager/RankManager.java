@@ -5,43 +5,76 @@ import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
-public class RankManager {
+public class RankManager implements AutoCloseable {
 
     public static final int DEFAULT_RANK_ID = -2;
 
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
-    private final Map<String, Rank> playersRanks = new HashMap<>();
-    private final List<Rank> ranksByLevel = new ArrayList<>();
+    private final Map<String, RankCombination> playersRanks = new HashMap<>();
+    private final Map<List<Integer>, RankCombination> rankCombinations = new HashMap<>();
     private final Map<Integer, Rank> ranksById = new HashMap<>();
+    private final NavigableMap<String, Rank> ranksByName = new TreeMap<>();
+    private final double permissionFilterFalsePositiveRate;
+
+    private volatile RankLadder ranksByLevel;
+    private volatile PermissionTracer permissionTracer;
 
     public RankManager(List<Rank> ranks) {
-        if (ranks.stream().noneMatch(r -> r.getId() == DEFAULT_RANK_ID)) {
-            throw new IllegalArgumentException("Ranks list does not contain a default rank");
-        }
+        this(builder().ranks(ranks));
+    }
 
-        var ranksTemp = new ArrayList<>(ranks);
-        ranksTemp.sort(Comparator.comparingInt(Rank::getLevel));
+    public RankManager(List<Rank> ranks, double permissionFilterFalsePositiveRate) {
+        this(builder().ranks(ranks).permissionFilterFalsePositiveRate(permissionFilterFalsePositiveRate));
+    }
+
+    private RankManager(Builder builder) {
+        PermissionFilter.validateFalsePositiveRate(builder.permissionFilterFalsePositiveRate);
+        this.permissionFilterFalsePositiveRate = builder.permissionFilterFalsePositiveRate;
 
-        ranksByLevel.addAll(ranksTemp);
-        ranksTemp.forEach(r -> ranksById.put(r.getId(), r));
+        var ranks = builder.ranks;
+        try {
+            attachAll(ranks);
+            load(ranks, builder.snapshot);
+        } catch (RuntimeException e) {
+            ranks.forEach(r -> r.detach(this));
+            throw e;
+        }
+    }
 
-        recalculatePermissions();
+    public static Builder builder() {
+        return new Builder();
     }
 
     public void addRank(Rank rank) {
         lock.writeLock().lock();
         try {
-            if (ranksById.get(rank.getId()) != null) {
-                throw new IllegalArgumentException("Rank with that id already exists");
-            } else if (ranksByLevel.stream().anyMatch(r -> r.getLevel() == rank.getLevel())) {
-                throw new IllegalArgumentException("Rank with that level already exists");
+            if (!rank.attach(this)) {
+                throw new IllegalArgumentException("Rank is already managed by a rank manager");
             }
 
-            ranksByLevel.add(findRankIndex(rank), rank);
-            ranksById.put(rank.getId(), rank);
+            try {
+                if (ranksById.get(rank.getId()) != null) {
+                    throw new IllegalArgumentException("Rank with that id already exists");
+                } else if (ranksByLevel.containsLevel(rank.getTrack(), rank.getLevel())) {
+                    throw new IllegalArgumentException("Rank with that level already exists in its track");
+                } else if (ranksByName.containsKey(nameKey(rank.getName()))) {
+                    throw new IllegalArgumentException("Rank with that name already exists");
+                }
+
+                var newRanksByLevel = ranksByLevel.with(rank.getLevel(), rank);
+
+                recalculatePermissions(newRanksByLevel.values(), null, null);
+
+                ranksByLevel = newRanksByLevel;
+            } catch (RuntimeException e) {
+                rank.detach(this);
+                throw e;
+            }
 
-            recalculatePermissions();
+            ranksById.put(rank.getId(), rank);
+            rank.setTracer(permissionTracer);
+            ranksByName.put(nameKey(rank.getName()), rank);
         } finally {
             lock.writeLock().unlock();
         }
@@ -54,19 +87,34 @@ public class RankManager {
                 throw new IllegalArgumentException("Rank with that id does not exist");
             } else if (rankId == DEFAULT_RANK_ID) {
                 throw new IllegalArgumentException("Cannot remove a default rank");
+            } else if (ranksByLevel.values().stream().anyMatch(r -> r.getInheritedRanks().contains(rankId))) {
+                throw new IllegalArgumentException("Cannot remove a rank inherited by another rank");
             }
 
-            ranksByLevel.removeIf(r -> r.getId() == rankId);
+            var rank = ranksById.get(rankId);
+            var newRanksByLevel = ranksByLevel.without(rank);
+
             ranksById.remove(rankId);
+            ranksByName.remove(nameKey(rank.getName()));
 
             var playersToChangeRank = playersRanks.entrySet().stream()
-                    .filter(e -> e.getValue().getId() == rankId)
+                    .filter(e -> e.getValue().contains(rank))
                     .map(Map.Entry::getKey)
                     .collect(Collectors.toList());
 
-            playersToChangeRank.forEach(p -> playersRanks.put(p, ranksById.get(DEFAULT_RANK_ID)));
+            playersToChangeRank.forEach(p -> {
+                var ranks = withoutTrack(playersRanks.get(p), rank.getTrack());
+                if (rank.getTrack().equals(Rank.DEFAULT_TRACK)) {
+                    ranks.add(ranksById.get(DEFAULT_RANK_ID));
+                }
+                assignPlayer(p, ranks);
+            });
 
-            recalculatePermissions();
+            recalculatePermissions(newRanksByLevel.values(), null, null);
+
+            ranksByLevel = newRanksByLevel;
+            rank.detach(this);
+            rank.setTracer(null);
         } finally {
             lock.writeLock().unlock();
         }
@@ -79,17 +127,28 @@ public class RankManager {
 
             if (rankModification.getLevel().isPresent()) {
                 int newLevel = rankModification.getLevel().get();
-                if (newLevel != rank.getLevel() && ranksByLevel.stream().anyMatch(r -> r.getLevel() == newLevel)) {
-                    throw new IllegalArgumentException("Rank with the new level already exists");
+                if (newLevel != rank.getLevel() && ranksByLevel.containsLevel(rank.getTrack(), newLevel)) {
+                    throw new IllegalArgumentException("Rank with the new level already exists in its track");
+                }
+            }
+
+            var oldNameKey = nameKey(rank.getName());
+            if (rankModification.getName().isPresent()) {
+                var sameName = ranksByName.get(nameKey(rankModification.getName().get()));
+                if (sameName != null && sameName != rank) {
+                    throw new IllegalArgumentException("Rank with the new name already exists");
                 }
             }
 
-            rank.modify(rankModification);
+            int newLevel = rankModification.getLevel().orElse(rank.getLevel());
+            var newRanksByLevel = ranksByLevel.without(rank).with(newLevel, rank);
+
+            recalculatePermissions(newRanksByLevel.values(), rank, rankModification);
 
-            ranksByLevel.removeIf(r -> r.getId() == id);
-            ranksByLevel.add(findRankIndex(rank), rank);
+            ranksByLevel = newRanksByLevel;
 
-            recalculatePermissions();
+            ranksByName.remove(oldNameKey);
+            ranksByName.put(nameKey(rank.getName()), rank);
         } finally {
             lock.writeLock().unlock();
         }
@@ -102,7 +161,11 @@ public class RankManager {
                 throw new IllegalArgumentException("Rank with that is does not exist");
             }
 
-            playersRanks.put(player, ranksById.get(rankId));
+            var rank = ranksById.get(rankId);
+            var ranks = withoutTrack(playersRanks.get(player), rank.getTrack());
+            ranks.add(rank);
+
+            assignPlayer(player, ranks);
         } finally {
             lock.writeLock().unlock();
         }
@@ -111,16 +174,60 @@ public class RankManager {
     public void removePlayer(String player) {
         lock.writeLock().lock();
         try {
-            playersRanks.remove(player);
+            assignPlayer(player, List.of());
         } finally {
             lock.writeLock().unlock();
         }
     }
 
+    public void removePlayer(String player, String track) {
+        lock.writeLock().lock();
+        try {
+            if (playersRanks.containsKey(player)) {
+                assignPlayer(player, withoutTrack(playersRanks.get(player), track));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean hasPermission(String player, String permission) {
+        lock.readLock().lock();
+        try {
+            var combination = playersRanks.get(player);
+            if (combination == null) {
+                return false;
+            }
+
+            var tracer = permissionTracer;
+            if (tracer != null) {
+                return tracer.trace(player, combination.getRanks(), permission, combination.hasPermission(permission));
+            }
+            return combination.hasPermission(permission);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     public Optional<Rank> getRankByPlayer(String player) {
+        return getRankByPlayer(player, Rank.DEFAULT_TRACK);
+    }
+
+    public Optional<Rank> getRankByPlayer(String player, String track) {
         lock.readLock().lock();
         try {
-            return Optional.ofNullable(playersRanks.get(player));
+            var combination = playersRanks.get(player);
+            return combination == null ? Optional.empty() : combination.getRank(track);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Rank> getRanksByPlayer(String player) {
+        lock.readLock().lock();
+        try {
+            var combination = playersRanks.get(player);
+            return combination == null ? List.of() : combination.getRanks();
         } finally {
             lock.readLock().unlock();
         }
@@ -135,28 +242,418 @@ public class RankManager {
         }
     }
 
+    public Optional<Rank> getRankByName(String name) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(ranksByName.get(nameKey(name)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Rank> getRanksByNamePrefix(String prefix) {
+        lock.readLock().lock();
+        try {
+            var key = nameKey(prefix);
+            var matching = new ArrayList<Rank>();
+            for (var entry : ranksByName.tailMap(key, true).entrySet()) {
+                if (!entry.getKey().startsWith(key)) {
+                    break;
+                }
+                matching.add(entry.getValue());
+            }
+            return matching;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     public List<Rank> getRanks() {
+        return List.copyOf(ranksByLevel.values());
+    }
+
+    public List<Rank> getRanksByTrack(String track) {
+        return List.copyOf(ranksByLevel.getTrack(track).values());
+    }
+
+    public Optional<Rank> getRankByLevel(int level) {
+        return getRankByLevel(level, Rank.DEFAULT_TRACK);
+    }
+
+    public Optional<Rank> getRankByLevel(int level, String track) {
+        return Optional.ofNullable(ranksByLevel.getTrack(track).get(level));
+    }
+
+    public Collection<Rank> getRanksBetween(int fromLevel, int toLevel) {
+        return getRanksBetween(fromLevel, toLevel, Rank.DEFAULT_TRACK);
+    }
+
+    public Collection<Rank> getRanksBetween(int fromLevel, int toLevel, String track) {
+        if (fromLevel > toLevel) {
+            return List.of();
+        }
+        return ranksByLevel.getTrack(track).subMap(fromLevel, true, toLevel, true).values();
+    }
+
+    public Optional<Rank> getHigherRank(Rank rank) {
+        return ranksByLevel.getHigherRank(rank);
+    }
+
+    public Optional<Rank> getLowerRank(Rank rank) {
+        return ranksByLevel.getLowerRank(rank);
+    }
+
+    public int compareRanks(String player, String otherPlayer) {
+        return compareRanks(player, otherPlayer, Rank.DEFAULT_TRACK);
+    }
+
+    public int compareRanks(String player, String otherPlayer, String track) {
+        lock.readLock().lock();
+        try {
+            return Integer.compare(levelOf(player, track), levelOf(otherPlayer, track));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<Rank> promotePlayer(String player) {
+        return promotePlayer(player, Rank.DEFAULT_TRACK);
+    }
+
+    public Optional<Rank> promotePlayer(String player, String track) {
+        lock.writeLock().lock();
+        try {
+            var current = getRankByPlayer(player, track);
+            var next = current.isEmpty()
+                    ? Optional.ofNullable(ranksByLevel.getTrack(track).firstEntry()).map(Map.Entry::getValue)
+                    : ranksByLevel.getHigherRank(current.get());
+
+            next.ifPresent(r -> setPlayer(player, r.getId()));
+            return next;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Optional<Rank> demotePlayer(String player) {
+        return demotePlayer(player, Rank.DEFAULT_TRACK);
+    }
+
+    public Optional<Rank> demotePlayer(String player, String track) {
+        lock.writeLock().lock();
+        try {
+            var current = getRankByPlayer(player, track);
+            var previous = current.flatMap(ranksByLevel::getLowerRank);
+
+            previous.ifPresent(r -> setPlayer(player, r.getId()));
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void setPermissionTracer(PermissionTracer permissionTracer) {
+        lock.writeLock().lock();
+        try {
+            this.permissionTracer = permissionTracer;
+            ranksByLevel.values().forEach(r -> r.setTracer(permissionTracer));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Optional<PermissionTracer> getPermissionTracer() {
+        return Optional.ofNullable(permissionTracer);
+    }
+
+    public RankSnapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            return RankSnapshot.of(ranksByLevel.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public double getPermissionFilterFalsePositiveRate() {
+        return permissionFilterFalsePositiveRate;
+    }
+
+    public long getPermissionFiltersSizeInBytes() {
         lock.readLock().lock();
         try {
-            return List.copyOf(ranksByLevel);
+            var filters = Collections.newSetFromMap(new IdentityHashMap<PermissionFilter, Boolean>());
+            ranksByLevel.values().forEach(r -> filters.add(r.getPermissionFilter()));
+            rankCombinations.values().forEach(c -> filters.add(c.getPermissionFilter()));
+
+            long size = 0;
+            for (var filter : filters) {
+                size += filter.getSizeInBytes();
+            }
+            return size;
         } finally {
             lock.readLock().unlock();
         }
     }
 
-    private void recalculatePermissions() {
-        var inherited = new HashSet<String>();
-        ranksByLevel.forEach(r -> {
-            inherited.addAll(r.getRankPermissions());
-            r.getRankNegatedPermissions().forEach(inherited::remove);
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            var ranks = ranksByLevel.values();
+            ranksByLevel = RankLadder.empty();
+            ranks.forEach(r -> {
+                r.detach(this);
+                r.setTracer(null);
+            });
+
+            playersRanks.clear();
+            rankCombinations.clear();
+            ranksById.clear();
+            ranksByName.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void attachAll(List<Rank> ranks) {
+        for (var rank : ranks) {
+            if (!rank.attach(this) && !rank.isManagedBy(this)) {
+                throw new IllegalArgumentException("Rank is already managed by a rank manager");
+            }
+        }
+    }
+
+    private void load(List<Rank> ranks, RankSnapshot snapshot) {
+        int count = ranks.size();
+        var levelKeys = new long[count];
+        var ids = new int[count];
+        boolean hasDefaultRank = false;
+
+        for (int i = 0; i < count; i++) {
+            var rank = ranks.get(i);
+            levelKeys[i] = ((long) rank.levelUnlocked() << 32) | i;
+            ids[i] = rank.getId();
+            if (rank.getId() == DEFAULT_RANK_ID) {
+                if (!rank.getTrack().equals(Rank.DEFAULT_TRACK)) {
+                    throw new IllegalArgumentException("Default rank must be on the default track");
+                }
+                hasDefaultRank = true;
+            }
+        }
+
+        if (!hasDefaultRank) {
+            throw new IllegalArgumentException("Ranks list does not contain a default rank");
+        }
+
+        Arrays.sort(ids);
+        for (int i = 1; i < count; i++) {
+            if (ids[i] == ids[i - 1]) {
+                throw new IllegalArgumentException("Ranks list contains ranks with the same id");
+            }
+        }
+
+        Arrays.sort(levelKeys);
+        var tracks = new HashMap<String, TreeMap<Integer, Rank>>();
+        for (long levelKey : levelKeys) {
+            var rank = ranks.get((int) levelKey);
+            var trackRanks = tracks.computeIfAbsent(rank.getTrack(), t -> new TreeMap<>());
+            if (trackRanks.put((int) (levelKey >> 32), rank) != null) {
+                throw new IllegalArgumentException("Ranks list contains ranks with the same level in one track");
+            }
+            ranksById.put(rank.getId(), rank);
+            if (ranksByName.put(nameKey(rank.nameUnlocked()), rank) != null) {
+                throw new IllegalArgumentException("Ranks list contains ranks with the same name");
+            }
+        }
+
+        ranksByLevel = new RankLadder(tracks);
+
+        if (snapshot != null) {
+            var parents = resolveParents(ranksByLevel.values(), null, null);
+            topologicalOrder(ranksByLevel.values(), parents);
+            if (snapshot.restore(ranksByLevel.values(), parents, permissionFilterFalsePositiveRate)) {
+                return;
+            }
+        }
+        recalculatePermissions(ranksByLevel.values(), null, null);
+    }
+
+    private Map<Rank, List<Rank>> resolveParents(Collection<Rank> ranks, Rank modifiedRank,
+                                                 RankModification rankModification) {
+        var parents = new HashMap<Rank, List<Rank>>();
+        var lastByTrack = new HashMap<String, Rank>();
+        for (var rank : ranks) {
+            var rankParents = new ArrayList<Rank>();
+
+            var ladderParent = lastByTrack.put(rank.getTrack(), rank);
+            if (ladderParent != null) {
+                rankParents.add(ladderParent);
+            }
+
+            var inheritedRanks = rank == modifiedRank
+                    ? rankModification.applyToInheritedRanks(rank.inheritedRanksUnlocked())
+                    : rank.inheritedRanksUnlocked();
+            for (int inheritedId : inheritedRanks) {
+                var parent = ranksById.get(inheritedId);
+                if (parent == null) {
+                    throw new IllegalArgumentException("Rank inherits a rank that does not exist");
+                } else if (!rankParents.contains(parent)) {
+                    rankParents.add(parent);
+                }
+            }
+
+            parents.put(rank, rankParents);
+        }
+        return parents;
+    }
+
+    private void recalculatePermissions(Collection<Rank> ranks, Rank modifiedRank, RankModification rankModification) {
+        var parents = resolveParents(ranks, modifiedRank, rankModification);
+
+        var effectivePermissions = new HashMap<Rank, Set<String>>();
+        for (var rank : topologicalOrder(ranks, parents)) {
+            var permissions = rank == modifiedRank
+                    ? rankModification.applyToPermissions(rank.rankPermissionsUnlocked())
+                    : rank.rankPermissionsUnlocked();
+            var negatedPermissions = rank == modifiedRank
+                    ? rankModification.applyToNegatedPermissions(rank.rankNegatedPermissionsUnlocked())
+                    : rank.rankNegatedPermissionsUnlocked();
+            var rankParents = parents.get(rank);
+
+            if (rankParents.size() == 1 && permissions.isEmpty() && negatedPermissions.isEmpty()) {
+                effectivePermissions.put(rank, effectivePermissions.get(rankParents.get(0)));
+            } else {
+                var inherited = new HashSet<String>();
+                rankParents.forEach(p -> inherited.addAll(effectivePermissions.get(p)));
+                inherited.addAll(permissions);
+                negatedPermissions.forEach(inherited::remove);
+
+                effectivePermissions.put(rank, Set.copyOf(inherited));
+            }
+        }
+
+        var filters = new IdentityHashMap<Set<String>, PermissionFilter>();
+        ranks.forEach(r -> {
+            var permissions = effectivePermissions.get(r);
+            var filter = filters.computeIfAbsent(permissions,
+                    p -> PermissionFilter.of(p, permissionFilterFalsePositiveRate));
 
-            r.resetEffectivePermissions(inherited);
+            if (r == modifiedRank) {
+                r.modify(rankModification, permissions, filter);
+            } else {
+                r.resetEffectivePermissions(permissions, filter);
+            }
+            r.resetParents(parents.get(r));
         });
+
+        rankCombinations.values().forEach(c -> c.recalculate(permissionFilterFalsePositiveRate));
+    }
+
+    RankLadder getLadder() {
+        return ranksByLevel;
+    }
+
+    private int levelOf(String player, String track) {
+        var combination = playersRanks.get(player);
+        return combination == null
+                ? Integer.MIN_VALUE
+                : combination.getRank(track).map(ranksByLevel::getLevel).orElse(Integer.MIN_VALUE);
     }
 
-    private int findRankIndex(Rank rank) {
-        return (int) ranksByLevel.stream()
-                .filter(r -> r.getLevel() < rank.getLevel())
-                .count();
+    private static List<Rank> topologicalOrder(Collection<Rank> ranks, Map<Rank, List<Rank>> parents) {
+        var children = new HashMap<Rank, List<Rank>>();
+        var remainingParents = new HashMap<Rank, Integer>();
+        var ready = new ArrayDeque<Rank>();
+        ranks.forEach(r -> {
+            var rankParents = parents.get(r);
+            rankParents.forEach(p -> children.computeIfAbsent(p, k -> new ArrayList<>()).add(r));
+            remainingParents.put(r, rankParents.size());
+            if (rankParents.isEmpty()) {
+                ready.add(r);
+            }
+        });
+
+        var order = new ArrayList<Rank>(ranks.size());
+        while (!ready.isEmpty()) {
+            var rank = ready.poll();
+            order.add(rank);
+            children.getOrDefault(rank, List.of()).forEach(c -> {
+                if (remainingParents.merge(c, -1, Integer::sum) == 0) {
+                    ready.add(c);
+                }
+            });
+        }
+
+        if (order.size() != ranks.size()) {
+            throw new IllegalArgumentException("Rank inheritance contains a cycle");
+        }
+        return order;
+    }
+
+    private static List<Rank> withoutTrack(RankCombination combination, String track) {
+        var ranks = new ArrayList<Rank>();
+        if (combination != null) {
+            combination.getRanks().forEach(r -> {
+                if (!r.getTrack().equals(track)) {
+                    ranks.add(r);
+                }
+            });
+        }
+        return ranks;
+    }
+
+    private void assignPlayer(String player, List<Rank> ranks) {
+        RankCombination previous;
+        if (ranks.isEmpty()) {
+            previous = playersRanks.remove(player);
+        } else {
+            var combination = rankCombinations.computeIfAbsent(RankCombination.keyOf(ranks),
+                    k -> new RankCombination(k, List.copyOf(ranks), permissionFilterFalsePositiveRate));
+            combination.retain();
+            previous = playersRanks.put(player, combination);
+        }
+
+        if (previous != null && previous.release()) {
+            rankCombinations.remove(previous.getKey());
+        }
+    }
+
+    private static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    public static final class Builder {
+
+        private final List<Rank> ranks = new ArrayList<>();
+
+        private double permissionFilterFalsePositiveRate = PermissionFilter.DEFAULT_FALSE_POSITIVE_RATE;
+        private RankSnapshot snapshot;
+
+        private Builder() {}
+
+        public Builder rank(Rank rank) {
+            this.ranks.add(rank);
+            return this;
+        }
+
+        public Builder ranks(Collection<Rank> ranks) {
+            this.ranks.addAll(ranks);
+            return this;
+        }
+
+        public Builder permissionFilterFalsePositiveRate(double permissionFilterFalsePositiveRate) {
+            this.permissionFilterFalsePositiveRate = permissionFilterFalsePositiveRate;
+            return this;
+        }
+
+        public Builder snapshot(RankSnapshot snapshot) {
+            this.snapshot = snapshot;
+            return this;
+        }
+
+        public RankManager build() {
+            return new RankManager(this);
+        }
     }
 }
@@ -15,10 +15,13 @@ public final class RankModification {
     private final List<String> addedPermissions;
     private final List<String> removedNegatedPermissions;
     private final List<String> addedNegatedPermissions;
+    private final List<Integer> removedInheritedRanks;
+    private final List<Integer> addedInheritedRanks;
 
     private RankModification(Integer level, String name, String displayName, String chatFormat,
                              List<String> removedPermissions, List<String> addedPermissions,
-                             List<String> removedNegatedPermissions, List<String> addedNegatedPermissions) {
+                             List<String> removedNegatedPermissions, List<String> addedNegatedPermissions,
+                             List<Integer> removedInheritedRanks, List<Integer> addedInheritedRanks) {
         this.level = level;
         this.name = name;
         this.displayName = displayName;
@@ -27,6 +30,8 @@ public final class RankModification {
         this.addedPermissions = addedPermissions;
         this.removedNegatedPermissions = removedNegatedPermissions;
         this.addedNegatedPermissions = addedNegatedPermissions;
+        this.removedInheritedRanks = removedInheritedRanks;
+        this.addedInheritedRanks = addedInheritedRanks;
     }
 
     public Optional<Integer> getLevel() {
@@ -61,6 +66,33 @@ public final class RankModification {
         return addedNegatedPermissions;
     }
 
+    public List<Integer> getRemovedInheritedRanks() {
+        return removedInheritedRanks;
+    }
+
+    public List<Integer> getAddedInheritedRanks() {
+        return addedInheritedRanks;
+    }
+
+    List<String> applyToPermissions(List<String> permissions) {
+        return apply(permissions, removedPermissions, addedPermissions);
+    }
+
+    List<String> applyToNegatedPermissions(List<String> negatedPermissions) {
+        return apply(negatedPermissions, removedNegatedPermissions, addedNegatedPermissions);
+    }
+
+    List<Integer> applyToInheritedRanks(List<Integer> inheritedRanks) {
+        return apply(inheritedRanks, removedInheritedRanks, addedInheritedRanks);
+    }
+
+    private static <T> List<T> apply(List<T> values, List<T> removed, List<T> added) {
+        var result = new ArrayList<>(values);
+        result.removeAll(removed);
+        result.addAll(added);
+        return result;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -71,6 +103,8 @@ public final class RankModification {
         private final List<String> addedPermissions = new ArrayList<>();
         private final List<String> removedNegatedPermissions = new ArrayList<>();
         private final List<String> addedNegatedPermissions = new ArrayList<>();
+        private final List<Integer> removedInheritedRanks = new ArrayList<>();
+        private final List<Integer> addedInheritedRanks = new ArrayList<>();
 
         private Integer level;
         private String name;
@@ -99,6 +133,16 @@ public final class RankModification {
             return this;
         }
 
+        public Builder removedInheritedRank(Collection<Integer> removedInheritedRank) {
+            this.removedInheritedRanks.addAll(removedInheritedRank);
+            return this;
+        }
+
+        public Builder addedInheritedRank(Collection<Integer> addedInheritedRank) {
+            this.addedInheritedRanks.addAll(addedInheritedRank);
+            return this;
+        }
+
         public Builder level(Integer level) {
             this.level = level;
             return this;
@@ -122,7 +166,8 @@ public final class RankModification {
         public RankModification build() {
             return new RankModification(level, name, displayName, chatFormat, List.copyOf(removedPermissions),
                     List.copyOf(addedPermissions), List.copyOf(removedNegatedPermissions),
-                    List.copyOf(addedNegatedPermissions));
+                    List.copyOf(addedNegatedPermissions), List.copyOf(removedInheritedRanks),
+                    List.copyOf(addedInheritedRanks));
         }
     }
 }
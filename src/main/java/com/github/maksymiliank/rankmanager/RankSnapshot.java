@@ -0,0 +1,188 @@
+package com.github.maksymiliank.rankmanager;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+public final class RankSnapshot {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_COUNT = 1 << 20;
+
+    private final List<Entry> entries;
+    private final List<Set<String>> permissionSets;
+
+    private RankSnapshot(List<Entry> entries, List<Set<String>> permissionSets) {
+        this.entries = entries;
+        this.permissionSets = permissionSets;
+    }
+
+    static RankSnapshot of(Collection<Rank> ranksByLevel) {
+        var entries = new ArrayList<Entry>(ranksByLevel.size());
+        var permissionSets = new ArrayList<Set<String>>();
+        var permissionSetIndexes = new IdentityHashMap<Set<String>, Integer>();
+
+        for (var rank : ranksByLevel) {
+            var effectivePermissions = rank.getEffectivePermissions();
+            var index = permissionSetIndexes.get(effectivePermissions);
+            if (index == null) {
+                index = permissionSets.size();
+                permissionSets.add(effectivePermissions);
+                permissionSetIndexes.put(effectivePermissions, index);
+            }
+
+            entries.add(new Entry(rank.getId(), rank.getTrack(), rank.getLevel(), rank.getRankPermissions(),
+                    rank.getRankNegatedPermissions(), rank.getInheritedRanks(), index));
+        }
+
+        return new RankSnapshot(List.copyOf(entries), List.copyOf(permissionSets));
+    }
+
+    public int getRankCount() {
+        return entries.size();
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+
+        out.writeInt(permissionSets.size());
+        for (var permissions : permissionSets) {
+            writeStrings(out, permissions);
+        }
+
+        out.writeInt(entries.size());
+        for (var entry : entries) {
+            out.writeInt(entry.id);
+            out.writeUTF(entry.track);
+            out.writeInt(entry.level);
+            writeStrings(out, entry.rankPermissions);
+            writeStrings(out, entry.rankNegatedPermissions);
+            out.writeInt(entry.inheritedRanks.size());
+            for (int inheritedRank : entry.inheritedRanks) {
+                out.writeInt(inheritedRank);
+            }
+            out.writeInt(entry.permissionSet);
+        }
+    }
+
+    public static RankSnapshot readFrom(DataInput in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported rank snapshot version: " + version);
+        }
+
+        int permissionSetCount = readCount(in);
+        var permissionSets = new ArrayList<Set<String>>();
+        for (int i = 0; i < permissionSetCount; i++) {
+            permissionSets.add(Set.copyOf(readStrings(in)));
+        }
+
+        int entryCount = readCount(in);
+        var entries = new ArrayList<Entry>();
+        for (int i = 0; i < entryCount; i++) {
+            int id = in.readInt();
+            var track = in.readUTF();
+            int level = in.readInt();
+            var rankPermissions = readStrings(in);
+            var rankNegatedPermissions = readStrings(in);
+
+            int inheritedRankCount = readCount(in);
+            var inheritedRanks = new ArrayList<Integer>();
+            for (int j = 0; j < inheritedRankCount; j++) {
+                inheritedRanks.add(in.readInt());
+            }
+
+            int permissionSet = in.readInt();
+            if (permissionSet < 0 || permissionSet >= permissionSetCount) {
+                throw new IOException("Rank snapshot refers to a missing permission set");
+            }
+
+            entries.add(new Entry(id, track, level, rankPermissions, rankNegatedPermissions,
+                    List.copyOf(inheritedRanks), permissionSet));
+        }
+
+        return new RankSnapshot(List.copyOf(entries), List.copyOf(permissionSets));
+    }
+
+    boolean restore(Collection<Rank> ranksByLevel, Map<Rank, List<Rank>> parents, double filterFalsePositiveRate) {
+        if (ranksByLevel.size() != entries.size()) {
+            return false;
+        }
+
+        int i = 0;
+        for (var rank : ranksByLevel) {
+            if (!entries.get(i++).matches(rank)) {
+                return false;
+            }
+        }
+
+        var filters = new PermissionFilter[permissionSets.size()];
+        i = 0;
+        for (var rank : ranksByLevel) {
+            int permissionSet = entries.get(i++).permissionSet;
+            if (filters[permissionSet] == null) {
+                filters[permissionSet] = PermissionFilter.of(permissionSets.get(permissionSet),
+                        filterFalsePositiveRate);
+            }
+            rank.resetEffectivePermissions(permissionSets.get(permissionSet), filters[permissionSet]);
+            rank.resetParents(parents.get(rank));
+        }
+        return true;
+    }
+
+    private static void writeStrings(DataOutput out, Collection<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (var string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static List<String> readStrings(DataInput in) throws IOException {
+        int count = readCount(in);
+        var strings = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            strings.add(in.readUTF());
+        }
+        return List.copyOf(strings);
+    }
+
+    private static int readCount(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_COUNT) {
+            throw new IOException("Rank snapshot contains an invalid count: " + count);
+        }
+        return count;
+    }
+
+    private static final class Entry {
+
+        private final int id;
+        private final String track;
+        private final int level;
+        private final List<String> rankPermissions;
+        private final List<String> rankNegatedPermissions;
+        private final List<Integer> inheritedRanks;
+        private final int permissionSet;
+
+        private Entry(int id, String track, int level, List<String> rankPermissions,
+                      List<String> rankNegatedPermissions, List<Integer> inheritedRanks, int permissionSet) {
+            this.id = id;
+            this.track = track;
+            this.level = level;
+            this.rankPermissions = rankPermissions;
+            this.rankNegatedPermissions = rankNegatedPermissions;
+            this.inheritedRanks = inheritedRanks;
+            this.permissionSet = permissionSet;
+        }
+
+        private boolean matches(Rank rank) {
+            return id == rank.getId()
+                    && track.equals(rank.getTrack())
+                    && level == rank.levelUnlocked()
+                    && rankPermissions.equals(rank.rankPermissionsUnlocked())
+                    && rankNegatedPermissions.equals(rank.rankNegatedPermissionsUnlocked())
+                    && inheritedRanks.equals(rank.inheritedRanksUnlocked());
+        }
+    }
+}
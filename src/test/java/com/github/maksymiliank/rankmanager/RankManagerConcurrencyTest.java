@@ -0,0 +1,276 @@
+package com.github.maksymiliank.rankmanager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RankManagerConcurrencyTest {
+
+    private static final Duration DURATION = Duration.ofMillis(500);
+    private static final int READERS = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+    private static final int MAX_ADDED_PERMISSIONS = 1_000;
+    private static final int HISTORY_SIZE = 100_000;
+    private static final int[] MOVING_LEVELS = {10, 30, 60, 150, 60, 30};
+    private static final int MAX_WINDOW = 64;
+
+    private RankManager rankManager;
+
+    @BeforeEach
+    public void setUp() {
+        rankManager = new RankManager(List.of(
+                rank(RankManager.DEFAULT_RANK_ID, 2, "default", List.of("a")),
+                rank(1, 5, "1", List.of("b")),
+                rank(3, 100, "3", List.of("c"))
+        ));
+    }
+
+    @Test
+    public void whenModifiesRankConcurrently_readersNeverSeeListsWithoutEffectivePermissions()
+            throws InterruptedException {
+        var rank = rankManager.getRankById(1).get();
+        var nextExpected = new int[READERS];
+
+        var result = new StressHarness()
+                .actor("writer", 1, (thread, iteration) -> {
+                    var modification = iteration < MAX_ADDED_PERMISSIONS
+                            ? RankModification.builder().addedPermission(List.of("p." + iteration)).build()
+                            : RankModification.builder().name("1-" + iteration).build();
+                    rankManager.modifyRank(1, modification);
+                })
+                .actor("reader", READERS, (thread, iteration) -> {
+                    var permissions = rank.getRankPermissions();
+                    var last = permissions.get(permissions.size() - 1);
+                    assertThat(rank.hasPermission(last))
+                            .as("own permission %s is listed but not effective", last)
+                            .isTrue();
+
+                    var probe = "p." + nextExpected[thread];
+                    if (rank.hasPermission(probe)) {
+                        assertThat(rank.getRankPermissions())
+                                .as("effective permission %s is not listed", probe)
+                                .contains(probe);
+                        nextExpected[thread]++;
+                    }
+                })
+                .run("modify-vs-read", DURATION);
+
+        result.rethrowFailure();
+        assertThat(result.getOperations("writer")).isPositive();
+        assertThat(result.getOperations("reader")).isPositive();
+    }
+
+    @Test
+    public void whenModifiesLevelConcurrently_readersObserveMonotonicHistory() throws InterruptedException {
+        var rank = rankManager.getRankById(3).get();
+        var histories = new int[READERS][HISTORY_SIZE];
+        var historySizes = new int[READERS];
+
+        var result = new StressHarness()
+                .actor("writer", 1, (thread, iteration) -> rankManager.modifyRank(3, RankModification.builder()
+                        .level(101 + (int) iteration)
+                        .build()))
+                .actor("reader", READERS, (thread, iteration) -> {
+                    if (historySizes[thread] < HISTORY_SIZE) {
+                        histories[thread][historySizes[thread]++] = rank.getLevel();
+                    }
+
+                    var ranks = rankManager.getRanks();
+                    assertThat(ranks).extracting(Rank::getId)
+                            .containsExactly(RankManager.DEFAULT_RANK_ID, 1, 3);
+                })
+                .run("level-register", DURATION);
+
+        result.rethrowFailure();
+        for (int t = 0; t < READERS; t++) {
+            for (int i = 1; i < historySizes[t]; i++) {
+                assertThat(histories[t][i])
+                        .as("reader %d saw level go back at observation %d", t, i)
+                        .isGreaterThanOrEqualTo(histories[t][i - 1]);
+            }
+        }
+        assertThat(rank.getLevel()).isEqualTo(100 + (int) result.getOperations("writer"));
+    }
+
+    @Test
+    public void whenMovesRankPastNeighbours_neighbourQueriesNeverReturnTheRankItself()
+            throws InterruptedException {
+        addLadderNeighbours();
+        var rank = rankManager.getRankById(1).get();
+
+        var result = new StressHarness()
+                .actor("writer", 1, (thread, iteration) -> rankManager.modifyRank(1, RankModification.builder()
+                        .level(MOVING_LEVELS[(int) ((iteration + 1) % MOVING_LEVELS.length)])
+                        .build()))
+                .actor("reader", READERS, (thread, iteration) -> {
+                    rankManager.getHigherRank(rank).ifPresent(r -> assertThat(r).isNotSameAs(rank));
+                    rankManager.getLowerRank(rank).ifPresent(r -> assertThat(r).isNotSameAs(rank));
+                })
+                .run("ladder-move", DURATION);
+
+        result.rethrowFailure();
+        assertThat(result.getOperations("writer")).isPositive();
+    }
+
+    @Test
+    public void whenMovesRankPastNeighbours_pairedReadsMatchSequentialLadder() throws InterruptedException {
+        addLadderNeighbours();
+        var rank = rankManager.getRankById(1).get();
+        var completed = new AtomicLong();
+        var levelThenLookup = new StressHarness.History("level-then-lookup", READERS, HISTORY_SIZE, 2, MAX_WINDOW);
+        var lookupThenLevel = new StressHarness.History("lookup-then-level", READERS, HISTORY_SIZE, 3, MAX_WINDOW);
+        var neighbours = new StressHarness.History("neighbours", READERS, HISTORY_SIZE, 2, MAX_WINDOW);
+
+        var result = new StressHarness()
+                .actor("writer", 1, (thread, iteration) -> {
+                    rankManager.modifyRank(1, RankModification.builder()
+                            .level(levelAt(iteration + 1))
+                            .build());
+                    completed.set(iteration + 1);
+                })
+                .actor("reader", READERS, (thread, iteration) -> {
+                    long before = completed.get();
+                    switch ((int) (iteration % 3)) {
+                        case 0: {
+                            int level = rank.getLevel();
+                            int found = idOf(rankManager.getRankByLevel(level));
+                            levelThenLookup.record(thread, before, completed.get(), level, found);
+                            break;
+                        }
+                        case 1: {
+                            int probe = MOVING_LEVELS[(int) (iteration % MOVING_LEVELS.length)];
+                            int found = idOf(rankManager.getRankByLevel(probe));
+                            int level = rank.getLevel();
+                            lookupThenLevel.record(thread, before, completed.get(), probe, found, level);
+                            break;
+                        }
+                        default: {
+                            int higher = idOf(rankManager.getHigherRank(rank));
+                            int lower = idOf(rankManager.getLowerRank(rank));
+                            neighbours.record(thread, before, completed.get(), higher, lower);
+                        }
+                    }
+                })
+                .run("ladder-history", DURATION);
+
+        result.rethrowFailure();
+        int checked = levelThenLookup.check((observed, first, second) -> levelAt(first) == observed[0]
+                && observed[1] == (levelAt(second) == observed[0] ? 1 : 0));
+        checked += lookupThenLevel.check((observed, first, second) ->
+                observed[1] == (levelAt(first) == observed[0] ? 1 : 0) && levelAt(second) == observed[2]);
+        checked += neighbours.check((observed, first, second) ->
+                higherAt(first) == observed[0] && lowerAt(second) == observed[1]);
+        assertThat(checked).isPositive();
+        assertThat(result.getOperations("writer")).isPositive();
+    }
+
+    @Test
+    public void whenRemovesAndReaddsParent_ladderAndInheritedPermissionsMatchSequentialModel()
+            throws InterruptedException {
+        var child = rankManager.getRankById(3).get();
+        var completed = new AtomicLong();
+        var history = new StressHarness.History("parent-churn", READERS, HISTORY_SIZE, 2, MAX_WINDOW);
+
+        var result = new StressHarness()
+                .actor("writer", 1, (thread, iteration) -> {
+                    if (iteration % 2 == 0) {
+                        rankManager.removeRank(1);
+                    } else {
+                        rankManager.addRank(rank(1, 5, "1", List.of("b")));
+                    }
+                    completed.set(iteration + 1);
+                })
+                .actor("reader", READERS, (thread, iteration) -> {
+                    long before = completed.get();
+                    int size = rankManager.getRanks().size();
+                    int inherited = child.hasPermission("b") ? 1 : 0;
+                    history.record(thread, before, completed.get(), size, inherited);
+                })
+                .run("parent-churn", DURATION);
+
+        result.rethrowFailure();
+        history.check((observed, first, second) -> observed[0] == (first % 2 == 0 ? 3 : 2)
+                && observed[1] == (second % 2 == 0 ? 1 : 0));
+        assertThat(result.getOperations("writer")).isPositive();
+    }
+
+    @Test
+    public void whenMixesWritesAndReads_observationsStayConsistent() throws InterruptedException {
+        int writers = 2;
+
+        var result = new StressHarness()
+                .actor("writer", writers, (thread, iteration) -> {
+                    int id = 1_000 + thread;
+                    var player = "player-" + thread;
+                    if (iteration % 2 == 0) {
+                        rankManager.addRank(rank(id, 1_000 + thread, "transient-" + thread, List.of("t." + thread)));
+                        rankManager.setPlayer(player, id);
+                    } else {
+                        rankManager.removeRank(id);
+                        if (iteration % 10 == 1) {
+                            rankManager.removePlayer(player);
+                        }
+                    }
+                })
+                .actor("reader", READERS, (thread, iteration) -> {
+                    int writer = (int) (iteration % writers);
+                    var name = "TRANSIENT-" + writer;
+
+                    rankManager.getRankByName(name).ifPresent(r -> {
+                        assertThat(r.getId()).isEqualTo(1_000 + writer);
+                        assertThat(r.getName()).isEqualToIgnoringCase(name);
+                    });
+                    rankManager.getRankByPlayer("player-" + writer).ifPresent(r ->
+                            assertThat(r.getId()).isIn(1_000 + writer, RankManager.DEFAULT_RANK_ID));
+                    rankManager.getRankById(RankManager.DEFAULT_RANK_ID).ifPresent(r ->
+                            assertThat(r.hasPermission("a")).isTrue());
+                    assertThat(rankManager.getRanksByNamePrefix("transient-").size()).isLessThanOrEqualTo(writers);
+                })
+                .run("mixed", DURATION);
+
+        result.rethrowFailure();
+        assertThat(result.getOperations("writer")).isPositive();
+        assertThat(result.getOperations("reader")).isPositive();
+    }
+
+    private void addLadderNeighbours() {
+        rankManager.modifyRank(1, RankModification.builder().level(MOVING_LEVELS[0]).build());
+        rankManager.modifyRank(3, RankModification.builder().level(50).build());
+        rankManager.addRank(rank(4, 100, "4", List.of("d")));
+    }
+
+    private static int levelAt(long state) {
+        return MOVING_LEVELS[(int) (state % MOVING_LEVELS.length)];
+    }
+
+    private static int higherAt(long state) {
+        int level = levelAt(state);
+        return level < 50 ? 3 : level < 100 ? 4 : 0;
+    }
+
+    private static int lowerAt(long state) {
+        int level = levelAt(state);
+        return level > 100 ? 4 : level > 50 ? 3 : RankManager.DEFAULT_RANK_ID;
+    }
+
+    private static int idOf(Optional<Rank> rank) {
+        return rank.map(Rank::getId).orElse(0);
+    }
+
+    private static Rank rank(int id, int level, String name, List<String> permissions) {
+        return Rank.builder()
+                .id(id)
+                .rankPermissions(permissions)
+                .rankNegatedPermissions(List.of())
+                .level(level)
+                .name(name)
+                .displayName(name)
+                .chatFormat(name)
+                .build();
+    }
+}
@@ -3,6 +3,9 @@ package com.github.maksymiliank.rankmanager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.*;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -14,35 +17,7 @@ public class RankManagerTest {
 
     @BeforeEach
     public void setUp() {
-        rankManager = new RankManager(List.of(
-                Rank.builder()
-                        .id(1)
-                        .rankPermissions(List.of("a.b.c", "a.*", "a.b", "a.b.c.d.e"))
-                        .rankNegatedPermissions(List.of("a.b.c.d", "a.b.c"))
-                        .level(5)
-                        .name("1")
-                        .displayName("d1")
-                        .chatFormat("c1")
-                        .build(),
-                Rank.builder()
-                        .id(RankManager.DEFAULT_RANK_ID)
-                        .rankPermissions(List.of("a"))
-                        .rankNegatedPermissions(List.of("a.b.c.d.e"))
-                        .level(2)
-                        .name("2")
-                        .displayName("d2")
-                        .chatFormat("c2")
-                        .build(),
-                Rank.builder()
-                        .id(3)
-                        .rankPermissions(List.of())
-                        .rankNegatedPermissions(List.of("a.*"))
-                        .level(100)
-                        .name("3")
-                        .displayName("d3")
-                        .chatFormat("c3")
-                        .build()
-        ));
+        rankManager = new RankManager(sampleRanks());
     }
 
     @Test
@@ -87,6 +62,174 @@ public class RankManagerTest {
                 .isThrownBy(() -> new RankManager(List.of(sampleRank())));
     }
 
+    @Test
+    public void givenDefaultRankOnOtherTrack_whenConstructs_throwsException() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> new RankManager(List.of(Rank.builder()
+                        .id(RankManager.DEFAULT_RANK_ID)
+                        .track("donor")
+                        .level(2)
+                        .name("default")
+                        .displayName("default")
+                        .chatFormat("")
+                        .build())));
+    }
+
+    @Test
+    public void givenDuplicatedId_whenConstructs_throwsException() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> RankManager.builder()
+                        .ranks(sampleRanks())
+                        .rank(Rank.builder().id(1).level(7).name("7").displayName("d7").chatFormat("c7").build())
+                        .build());
+    }
+
+    @Test
+    public void givenDuplicatedLevel_whenConstructs_throwsException() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> RankManager.builder()
+                        .ranks(sampleRanks())
+                        .rank(Rank.builder().id(7).level(5).name("7").displayName("d7").chatFormat("c7").build())
+                        .build());
+    }
+
+    @Test
+    public void givenRanksOfAnotherManager_whenBuilds_throwsExceptionAndKeepsRanks() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> RankManager.builder()
+                        .ranks(rankManager.getRanks())
+                        .rank(Rank.builder().id(7).level(7).name("7").displayName("d7").chatFormat("c7")
+                                .rankNegatedPermissions(List.of("a")).build())
+                        .build());
+
+        assertThat(rankManager.getRankById(1).get().hasPermission("a")).isTrue();
+        assertThat(rankManager.getRankById(1).get().getLevel()).isEqualTo(5);
+    }
+
+    @Test
+    public void givenClosedManager_whenBuildsFromItsRanks_takesOverRanks() {
+        rankManager.setPlayer("p", 1);
+        var ranks = rankManager.getRanks();
+
+        rankManager.close();
+        var rebuilt = new RankManager(ranks);
+
+        assertThat(rankManager.getRanks()).isEmpty();
+        assertThat(rankManager.getRanksByPlayer("p")).isEmpty();
+        assertThat(rebuilt.getRanks()).containsExactlyElementsOf(ranks);
+        assertThat(rebuilt.getRankById(1).get().getLevel()).isEqualTo(5);
+        assertThat(rebuilt.getRankById(1).get().hasPermission("a.*")).isTrue();
+    }
+
+    @Test
+    public void givenInvalidRanks_whenBuilds_releasesRanks() {
+        var ranks = sampleRanks();
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> RankManager.builder()
+                        .ranks(ranks)
+                        .rank(Rank.builder().id(1).level(7).name("7").displayName("d7").chatFormat("c7").build())
+                        .build());
+
+        var manager = RankManager.builder().ranks(ranks).build();
+        assertThat(manager.getRankById(1).get().hasPermission("a.b")).isTrue();
+    }
+
+    @Test
+    public void givenSnapshot_whenBuilds_restoresPermissions() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        rankManager.snapshot().writeTo(new DataOutputStream(bytes));
+        var snapshot = RankSnapshot.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        var restored = RankManager.builder()
+                .ranks(sampleRanks())
+                .snapshot(snapshot)
+                .build();
+
+        assertThat(snapshot.getRankCount()).isEqualTo(3);
+        assertThat(restored.getRanks()).extracting(Rank::getId).containsExactly(RankManager.DEFAULT_RANK_ID, 1, 3);
+        assertThat(restored.getRankById(3).get().getEffectivePermissions())
+                .containsExactlyInAnyOrder("a", "a.b", "a.b.c.d.e");
+        assertThat(restored.getRankById(1).get().hasPermission("a.*")).isTrue();
+        assertThat(restored.getRankById(1).get().hasPermission("a.b.c")).isFalse();
+    }
+
+    @Test
+    public void givenOutdatedSnapshot_whenBuilds_recalculatesPermissions() {
+        var snapshot = rankManager.snapshot();
+
+        var restored = RankManager.builder()
+                .ranks(sampleRanks())
+                .rank(sampleRank())
+                .snapshot(snapshot)
+                .build();
+
+        assertThat(restored.getRankById(4).get().hasPermission("a.b.*")).isTrue();
+        assertThat(restored.getRankById(1).get().hasPermission("a")).isFalse();
+    }
+
+    @Test
+    public void givenCorruptSnapshot_whenReads_throwsIOException() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        rankManager.snapshot().writeTo(new DataOutputStream(bytes));
+        var negativeCount = bytes.toByteArray();
+        negativeCount[4] = (byte) 0xFF;
+        var truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 3);
+
+        assertThatExceptionOfType(IOException.class).isThrownBy(() ->
+                RankSnapshot.readFrom(new DataInputStream(new ByteArrayInputStream(negativeCount))));
+        assertThatExceptionOfType(IOException.class).isThrownBy(() ->
+                RankSnapshot.readFrom(new DataInputStream(new ByteArrayInputStream(truncated))));
+    }
+
+    @Test
+    public void givenSnapshotOfCyclicRanks_whenBuilds_throwsException() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+        out.writeInt(1);
+        out.writeInt(1);
+        out.writeInt(0);
+        out.writeInt(2);
+        for (int id : new int[]{RankManager.DEFAULT_RANK_ID, 5}) {
+            out.writeInt(id);
+            out.writeUTF(Rank.DEFAULT_TRACK);
+            out.writeInt(id == 5 ? 7 : 2);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeInt(id == 5 ? 0 : 1);
+            if (id != 5) {
+                out.writeInt(5);
+            }
+            out.writeInt(0);
+        }
+        var snapshot = RankSnapshot.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> RankManager.builder()
+                        .rank(Rank.builder().id(RankManager.DEFAULT_RANK_ID).level(2).name("default")
+                                .displayName("default").chatFormat("").inheritedRanks(List.of(5)).build())
+                        .rank(Rank.builder().id(5).level(7).name("5").displayName("5").chatFormat("").build())
+                        .snapshot(snapshot)
+                        .build())
+                .withMessageContaining("cycle");
+    }
+
+    @Test
+    public void givenRankOfAnotherManager_whenAddsRank_throwsException() {
+        var other = new RankManager(List.of(Rank.builder()
+                .id(RankManager.DEFAULT_RANK_ID)
+                .level(3)
+                .name("other")
+                .displayName("other")
+                .chatFormat("")
+                .build()));
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> rankManager.addRank(other.getRankById(RankManager.DEFAULT_RANK_ID).get()));
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> rankManager.addRank(rankManager.getRankById(1).get()));
+    }
+
     @Test
     public void whenAddsRank_setsRankById() {
         rankManager.addRank(sampleRank());
@@ -166,6 +309,50 @@ public class RankManagerTest {
                 ));
     }
 
+    @Test
+    public void givenAlreadyExistingName_whenAddsRank_throwsException() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> rankManager.addRank(
+                        Rank.builder()
+                                .id(4)
+                                .rankPermissions(List.of())
+                                .rankNegatedPermissions(List.of())
+                                .level(1)
+                                .name("3")
+                                .displayName("")
+                                .chatFormat("")
+                                .build()
+                ));
+    }
+
+    @Test
+    public void whenAddsRank_setsRankByName() {
+        rankManager.addRank(sampleRank());
+
+        assertThat(rankManager.getRankByName("4").get().getId()).isEqualTo(4);
+    }
+
+    @Test
+    public void whenGetsRankByName_ignoresCase() {
+        rankManager.modifyRank(1, RankModification.builder()
+                .name("Moderator")
+                .build());
+
+        assertThat(rankManager.getRankByName("moderator").get().getId()).isEqualTo(1);
+        assertThat(rankManager.getRankByName("MODERATOR").get().getId()).isEqualTo(1);
+        assertThat(rankManager.getRankByName("1")).isEmpty();
+    }
+
+    @Test
+    public void whenGetsRanksByNamePrefix_returnsMatchingRanksOrderedByName() {
+        rankManager.modifyRank(1, RankModification.builder().name("mod").build());
+        rankManager.modifyRank(3, RankModification.builder().name("Moderator").build());
+
+        assertThat(rankManager.getRanksByNamePrefix("MO")).extracting(Rank::getId).containsExactly(1, 3);
+        assertThat(rankManager.getRanksByNamePrefix("mode")).extracting(Rank::getId).containsExactly(3);
+        assertThat(rankManager.getRanksByNamePrefix("x")).isEmpty();
+    }
+
     @Test
     public void whenSetsPlayers_setsTheirRank() {
         addSamplePlayers();
@@ -226,6 +413,13 @@ public class RankManagerTest {
         assertThat(rankManager.getRankByPlayer("p3").get().getId()).isEqualTo(3);
     }
 
+    @Test
+    public void whenRemovesRank_removesRankByName() {
+        rankManager.removeRank(1);
+
+        assertThat(rankManager.getRankByName("1")).isEmpty();
+    }
+
     @Test
     public void givenNonExistingId_whenRemovesRank_throwsException() {
         assertThatExceptionOfType(IllegalArgumentException.class)
@@ -312,6 +506,466 @@ public class RankManagerTest {
                 );
     }
 
+    @Test
+    public void whenCalculatesPermissions_buildsPermissionFilters() {
+        var filter = rankManager.getRankById(1).get().getPermissionFilter();
+
+        assertThat(filter.mightContain("a")).isTrue();
+        assertThat(filter.mightContain("a.*")).isTrue();
+        assertThat(filter.mightContain("a.b.c.d.e")).isTrue();
+        assertThat(filter.getSizeInBytes()).isPositive();
+        assertThat(filter.getExpectedFalsePositiveRate())
+                .isLessThanOrEqualTo(PermissionFilter.DEFAULT_FALSE_POSITIVE_RATE);
+        assertThat(rankManager.getPermissionFiltersSizeInBytes()).isPositive();
+    }
+
+    @Test
+    public void whenCalculatesPermissions_permissionFiltersRejectMostMissingPermissions() {
+        var filter = rankManager.getRankById(1).get().getPermissionFilter();
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("missing.node." + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertThat(falsePositives).isLessThan(500);
+    }
+
+    @Test
+    public void givenInvalidFalsePositiveRate_whenConstructs_throwsException() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> new RankManager(sampleRanks(), 1.0));
+    }
+
+    @Test
+    public void givenExistingNewName_whenModifiesRank_throwsException() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> rankManager.modifyRank(1, RankModification.builder()
+                        .name("3")
+                        .build())
+                );
+    }
+
+    @Test
+    public void givenSeparateTrack_whenCalculatesPermissions_inheritsOnlyWithinTrack() {
+        addSampleTrackRanks();
+
+        assertThat(rankManager.getRankById(10).get().hasPermission("donor.fly")).isTrue();
+        assertThat(rankManager.getRankById(10).get().hasPermission("a")).isFalse();
+
+        assertThat(rankManager.getRankById(11).get().hasPermission("donor.fly")).isTrue();
+        assertThat(rankManager.getRankById(11).get().hasPermission("donor.hat")).isTrue();
+        assertThat(rankManager.getRankById(11).get().hasPermission("a")).isFalse();
+
+        assertThat(rankManager.getRankById(3).get().hasPermission("donor.fly")).isFalse();
+        assertThat(rankManager.getRanksByTrack("donor")).extracting(Rank::getId).containsExactly(10, 11);
+    }
+
+    @Test
+    public void givenInheritedRanks_whenCalculatesPermissions_mergesParentsPermissions() {
+        addSampleTrackRanks();
+
+        rankManager.addRank(Rank.builder()
+                .id(20)
+                .track("staff")
+                .inheritedRanks(List.of(11, 1))
+                .rankPermissions(List.of("staff.kick"))
+                .rankNegatedPermissions(List.of("donor.hat"))
+                .level(60)
+                .name("helper")
+                .displayName("Helper")
+                .chatFormat("c20")
+                .build());
+
+        var rank = rankManager.getRankById(20).get();
+        assertThat(rank.hasPermission("staff.kick")).isTrue();
+        assertThat(rank.hasPermission("donor.fly")).isTrue();
+        assertThat(rank.hasPermission("donor.hat")).isFalse();
+        assertThat(rank.hasPermission("a")).isTrue();
+        assertThat(rank.hasPermission("a.b.c")).isFalse();
+    }
+
+    @Test
+    public void givenNonExistingInheritedRank_whenAddsRank_throwsException() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> rankManager.addRank(Rank.builder()
+                        .id(4)
+                        .inheritedRanks(List.of(500))
+                        .level(3)
+                        .name("4")
+                        .displayName("d4")
+                        .chatFormat("c4")
+                        .build()));
+
+        assertThat(rankManager.getRankById(4)).isEmpty();
+    }
+
+    @Test
+    public void givenInheritanceCycle_whenModifiesRank_throwsExceptionAndKeepsRank() {
+        addSampleTrackRanks();
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> rankManager.modifyRank(10, RankModification.builder()
+                        .addedInheritedRank(List.of(11))
+                        .level(40)
+                        .build()));
+
+        assertThat(rankManager.getRankById(10).get().getInheritedRanks()).isEmpty();
+        assertThat(rankManager.getRankById(10).get().getLevel()).isEqualTo(30);
+        assertThat(rankManager.getRanksByTrack("donor")).extracting(Rank::getId).containsExactly(10, 11);
+    }
+
+    @Test
+    public void givenRankInheritedByAnotherRank_whenRemovesRank_throwsException() {
+        addSampleTrackRanks();
+        rankManager.modifyRank(3, RankModification.builder()
+                .addedInheritedRank(List.of(10))
+                .build());
+
+        assertThat(rankManager.getRankById(3).get().hasPermission("donor.fly")).isTrue();
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> rankManager.removeRank(10));
+    }
+
+    @Test
+    public void givenRanksOnManyTracks_whenSetsPlayer_keepsOneRankPerTrack() {
+        addSampleTrackRanks();
+
+        rankManager.setPlayer("p", 1);
+        rankManager.setPlayer("p", 10);
+        rankManager.setPlayer("p", 11);
+
+        assertThat(rankManager.getRankByPlayer("p").get().getId()).isEqualTo(1);
+        assertThat(rankManager.getRankByPlayer("p", "donor").get().getId()).isEqualTo(11);
+        assertThat(rankManager.getRanksByPlayer("p")).extracting(Rank::getId).containsExactlyInAnyOrder(1, 11);
+    }
+
+    @Test
+    public void givenRanksOnManyTracks_whenChecksPlayerPermission_usesUnionOfRanks() {
+        addSampleTrackRanks();
+
+        rankManager.setPlayer("p", 1);
+        rankManager.setPlayer("p", 11);
+        rankManager.setPlayer("q", 1);
+
+        assertThat(rankManager.hasPermission("p", "a.b")).isTrue();
+        assertThat(rankManager.hasPermission("p", "donor.hat")).isTrue();
+        assertThat(rankManager.hasPermission("p", "a.b.c")).isFalse();
+        assertThat(rankManager.hasPermission("q", "donor.hat")).isFalse();
+        assertThat(rankManager.hasPermission("unknown", "a")).isFalse();
+
+        rankManager.modifyRank(11, RankModification.builder()
+                .addedPermission(List.of("donor.pet"))
+                .build());
+
+        assertThat(rankManager.hasPermission("p", "donor.pet")).isTrue();
+    }
+
+    @Test
+    public void whenRemovesPlayerFromTrack_keepsOtherTracks() {
+        addSampleTrackRanks();
+        rankManager.setPlayer("p", 1);
+        rankManager.setPlayer("p", 11);
+
+        rankManager.removePlayer("p", "donor");
+
+        assertThat(rankManager.getRankByPlayer("p", "donor")).isEmpty();
+        assertThat(rankManager.hasPermission("p", "donor.fly")).isFalse();
+        assertThat(rankManager.getRankByPlayer("p").get().getId()).isEqualTo(1);
+    }
+
+    @Test
+    public void givenRankOnSeparateTrack_whenRemovesRank_removesPlayersRankOnThatTrack() {
+        addSampleTrackRanks();
+        rankManager.setPlayer("p", 1);
+        rankManager.setPlayer("p", 11);
+        rankManager.setPlayer("q", 11);
+
+        rankManager.removeRank(11);
+
+        assertThat(rankManager.getRanksByPlayer("p")).extracting(Rank::getId).containsExactly(1);
+        assertThat(rankManager.getRanksByPlayer("q")).isEmpty();
+        assertThat(rankManager.hasPermission("p", "donor.hat")).isFalse();
+    }
+
+    @Test
+    public void whenRendersChat_fillsPlaceholders() {
+        rankManager.modifyRank(1, RankModification.builder()
+                .name("mod")
+                .displayName("Moderator")
+                .chatFormat("[{display_name}|{rank}] {player}: {message} {unknown}")
+                .build());
+
+        var template = rankManager.getRankById(1).get().getChatTemplate();
+        var out = new StringBuilder("> ");
+        template.render(out, "Steve", "hi");
+
+        assertThat(out.toString()).isEqualTo("> [Moderator|mod] Steve: hi {unknown}");
+        assertThat(template.getPrefix()).isEqualTo("[Moderator|mod] ");
+        assertThat(template.estimateLength("Steve", "hi")).isEqualTo(out.length() - 2);
+    }
+
+    @Test
+    public void whenRendersChatIntoCharBuffer_fillsPlaceholders() {
+        rankManager.modifyRank(1, RankModification.builder()
+                .chatFormat("{{player}} {message}")
+                .build());
+
+        var out = CharBuffer.allocate(32);
+        rankManager.getRankById(1).get().getChatTemplate().render(out, "Alex", "hello");
+
+        assertThat(out.flip().toString()).isEqualTo("{Alex} hello");
+    }
+
+    @Test
+    public void whenModifiesDisplayName_recompilesChatTemplate() {
+        rankManager.modifyRank(1, RankModification.builder()
+                .chatFormat("{display_name} {player}")
+                .build());
+        rankManager.modifyRank(1, RankModification.builder()
+                .displayName("Admin")
+                .build());
+
+        assertThat(rankManager.getRankById(1).get().getChatTemplate().getPrefix()).isEqualTo("Admin ");
+    }
+
+    @Test
+    public void givenTracer_whenChecksPermissions_recordsDecidingRanks() {
+        var tracer = PermissionTracer.builder().build();
+        rankManager.setPermissionTracer(tracer);
+
+        var rank = rankManager.getRankById(3).get();
+        assertThat(rank.hasPermission("a.b")).isTrue();
+        assertThat(rank.hasPermission("a.*")).isFalse();
+        assertThat(rank.hasPermission("a.b.c")).isFalse();
+        assertThat(rank.hasPermission("x")).isFalse();
+
+        var decisions = tracer.drain();
+
+        assertThat(decisions).extracting(PermissionDecision::getReason).containsExactly(
+                PermissionDecision.Reason.GRANTED, PermissionDecision.Reason.NEGATED,
+                PermissionDecision.Reason.NEGATED, PermissionDecision.Reason.NOT_GRANTED);
+        assertThat(decisions).extracting(d -> d.getDecidingRankId().orElse(null))
+                .containsExactly(1, 3, 1, null);
+        assertThat(decisions).allMatch(d -> d.getRankIds().equals(List.of(3)));
+        assertThat(tracer.drain()).isEmpty();
+    }
+
+    @Test
+    public void givenTracer_whenChecksPlayerPermissions_recordsPlayer() {
+        var tracer = PermissionTracer.builder()
+                .permissionPredicate(p -> p.startsWith("a.b"))
+                .build();
+        rankManager.setPermissionTracer(tracer);
+        rankManager.setPlayer("p", 1);
+
+        assertThat(rankManager.hasPermission("p", "a.b")).isTrue();
+        assertThat(rankManager.hasPermission("p", "a")).isTrue();
+
+        var decisions = tracer.drain();
+
+        assertThat(decisions).hasSize(1);
+        assertThat(decisions.get(0).getPlayer()).contains("p");
+        assertThat(decisions.get(0).getPermission()).isEqualTo("a.b");
+        assertThat(decisions.get(0).getDecidingRankId()).contains(1);
+    }
+
+    @Test
+    public void givenTracer_whenDeniesPlayerWithManyRanks_recordsNegatingRank() {
+        addSampleTrackRanks();
+        var tracer = PermissionTracer.builder().build();
+        rankManager.setPermissionTracer(tracer);
+        rankManager.setPlayer("p", 10);
+        rankManager.setPlayer("p", 3);
+
+        assertThat(rankManager.hasPermission("p", "a.*")).isFalse();
+        assertThat(rankManager.hasPermission("p", "donor.fly")).isTrue();
+
+        var decisions = tracer.drain();
+
+        assertThat(decisions).hasSize(2);
+        assertThat(decisions).allSatisfy(d -> assertThat(d.getRankIds()).containsExactlyInAnyOrder(10, 3));
+        assertThat(decisions.get(0).getReason()).isEqualTo(PermissionDecision.Reason.NEGATED);
+        assertThat(decisions.get(0).getDecidingRankId()).contains(3);
+        assertThat(decisions.get(1).getReason()).isEqualTo(PermissionDecision.Reason.GRANTED);
+        assertThat(decisions.get(1).getDecidingRankId()).contains(10);
+    }
+
+    @Test
+    public void givenTracer_whenChecksRemovedRank_recordsNothing() {
+        var tracer = PermissionTracer.builder().build();
+        rankManager.setPermissionTracer(tracer);
+        var rank = rankManager.getRankById(3).get();
+
+        rankManager.removeRank(3);
+        rank.hasPermission("x");
+
+        assertThat(tracer.drain()).isEmpty();
+    }
+
+    @Test
+    public void givenFullTracer_whenDrains_reportsDroppedDecisions() {
+        var tracer = PermissionTracer.builder()
+                .capacity(4)
+                .build();
+        rankManager.setPermissionTracer(tracer);
+
+        var rank = rankManager.getRankById(1).get();
+        for (int i = 0; i < 10; i++) {
+            rank.hasPermission("a." + i);
+        }
+
+        assertThat(tracer.drain()).extracting(PermissionDecision::getPermission)
+                .containsExactly("a.6", "a.7", "a.8", "a.9");
+        assertThat(tracer.getDroppedCount()).isEqualTo(6);
+        assertThat(tracer.getRecordedCount()).isEqualTo(10);
+    }
+
+    @Test
+    public void givenRemovedTracer_whenChecksPermissions_recordsNothing() {
+        var tracer = PermissionTracer.builder().build();
+        rankManager.setPermissionTracer(tracer);
+        rankManager.setPermissionTracer(null);
+
+        rankManager.getRankById(1).get().hasPermission("a");
+
+        assertThat(tracer.drain()).isEmpty();
+    }
+
+    @Test
+    public void whenGetsRanksByLevel_usesLevelIndex() {
+        assertThat(rankManager.getRankByLevel(5).get().getId()).isEqualTo(1);
+        assertThat(rankManager.getRankByLevel(6)).isEmpty();
+
+        assertThat(rankManager.getRanksBetween(2, 5)).extracting(Rank::getId)
+                .containsExactly(RankManager.DEFAULT_RANK_ID, 1);
+        assertThat(rankManager.getRanksBetween(3, 1000)).extracting(Rank::getId).containsExactly(1, 3);
+        assertThat(rankManager.getRanksBetween(6, 5)).isEmpty();
+    }
+
+    @Test
+    public void givenRankOnOtherTrack_whenAddsRankAtTakenLevel_keepsLevelsPerTrack() {
+        addSampleTrackRanks();
+        rankManager.addRank(Rank.builder()
+                .id(12)
+                .track("donor")
+                .level(5)
+                .name("supporter")
+                .displayName("Supporter")
+                .chatFormat("c12")
+                .build());
+
+        assertThat(rankManager.getRankByLevel(5).get().getId()).isEqualTo(1);
+        assertThat(rankManager.getRankByLevel(5, "donor").get().getId()).isEqualTo(12);
+        assertThat(rankManager.getRanksBetween(0, 30, "donor")).extracting(Rank::getId).containsExactly(12, 10);
+        assertThat(rankManager.getHigherRank(rankManager.getRankById(12).get()).get().getId()).isEqualTo(10);
+        assertThat(rankManager.getRanks()).extracting(Rank::getId)
+                .containsExactly(RankManager.DEFAULT_RANK_ID, 1, 12, 10, 11, 3);
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> rankManager.modifyRank(12, RankModification.builder().level(30).build()));
+
+        rankManager.removeRank(12);
+
+        assertThat(rankManager.getRankByLevel(5).get().getId()).isEqualTo(1);
+        assertThat(rankManager.getRankByLevel(5, "donor")).isEmpty();
+    }
+
+    @Test
+    public void givenRanksOnDifferentTracks_whenBuildsWithSameLevel_keepsBoth() {
+        var manager = RankManager.builder()
+                .ranks(sampleRanks())
+                .rank(Rank.builder().id(7).track("donor").level(5).name("7").displayName("d7").chatFormat("c7")
+                        .build())
+                .build();
+
+        assertThat(manager.getRankByLevel(5).get().getId()).isEqualTo(1);
+        assertThat(manager.getRankByLevel(5, "donor").get().getId()).isEqualTo(7);
+    }
+
+    @Test
+    public void whenModifiesRankLevel_updatesLevelIndex() {
+        rankManager.modifyRank(1, sampleRankModification());
+
+        assertThat(rankManager.getRankByLevel(5)).isEmpty();
+        assertThat(rankManager.getRankByLevel(1).get().getId()).isEqualTo(1);
+        assertThat(rankManager.getLowerRank(rankManager.getRankById(1).get())).isEmpty();
+        assertThat(rankManager.getHigherRank(rankManager.getRankById(1).get()).get().getId())
+                .isEqualTo(RankManager.DEFAULT_RANK_ID);
+    }
+
+    @Test
+    public void whenGetsNeighbouringRanks_staysOnTrack() {
+        addSampleTrackRanks();
+
+        assertThat(rankManager.getHigherRank(rankManager.getRankById(1).get()).get().getId()).isEqualTo(3);
+        assertThat(rankManager.getLowerRank(rankManager.getRankById(1).get()).get().getId())
+                .isEqualTo(RankManager.DEFAULT_RANK_ID);
+        assertThat(rankManager.getHigherRank(rankManager.getRankById(10).get()).get().getId()).isEqualTo(11);
+        assertThat(rankManager.getHigherRank(rankManager.getRankById(11).get())).isEmpty();
+    }
+
+    @Test
+    public void whenComparesRanks_comparesLevels() {
+        addSamplePlayers();
+
+        assertThat(rankManager.compareRanks("p3", "p10")).isPositive();
+        assertThat(rankManager.compareRanks("p2", "p10")).isNegative();
+        assertThat(rankManager.compareRanks("p10", "p11")).isZero();
+        assertThat(rankManager.compareRanks("unknown", "p2")).isNegative();
+    }
+
+    @Test
+    public void whenPromotesAndDemotesPlayer_movesToNeighbouringLevel() {
+        addSampleTrackRanks();
+        rankManager.setPlayer("p", RankManager.DEFAULT_RANK_ID);
+
+        assertThat(rankManager.promotePlayer("p").get().getId()).isEqualTo(1);
+        assertThat(rankManager.promotePlayer("p").get().getId()).isEqualTo(3);
+        assertThat(rankManager.promotePlayer("p")).isEmpty();
+        assertThat(rankManager.getRankByPlayer("p").get().getId()).isEqualTo(3);
+
+        assertThat(rankManager.demotePlayer("p").get().getId()).isEqualTo(1);
+        assertThat(rankManager.getRankByPlayer("p").get().getId()).isEqualTo(1);
+
+        assertThat(rankManager.demotePlayer("p", "donor")).isEmpty();
+        assertThat(rankManager.promotePlayer("p", "donor").get().getId()).isEqualTo(10);
+        assertThat(rankManager.getRanksByPlayer("p")).extracting(Rank::getId).containsExactlyInAnyOrder(1, 10);
+    }
+
+    private List<Rank> sampleRanks() {
+        return List.of(
+                Rank.builder()
+                        .id(1)
+                        .rankPermissions(List.of("a.b.c", "a.*", "a.b", "a.b.c.d.e"))
+                        .rankNegatedPermissions(List.of("a.b.c.d", "a.b.c"))
+                        .level(5)
+                        .name("1")
+                        .displayName("d1")
+                        .chatFormat("c1")
+                        .build(),
+                Rank.builder()
+                        .id(RankManager.DEFAULT_RANK_ID)
+                        .rankPermissions(List.of("a"))
+                        .rankNegatedPermissions(List.of("a.b.c.d.e"))
+                        .level(2)
+                        .name("2")
+                        .displayName("d2")
+                        .chatFormat("c2")
+                        .build(),
+                Rank.builder()
+                        .id(3)
+                        .rankPermissions(List.of())
+                        .rankNegatedPermissions(List.of("a.*"))
+                        .level(100)
+                        .name("3")
+                        .displayName("d3")
+                        .chatFormat("c3")
+                        .build()
+        );
+    }
+
     private Rank sampleRank() {
         return Rank.builder()
                 .id(4)
@@ -337,6 +991,27 @@ public class RankManagerTest {
                 .build();
     }
 
+    private void addSampleTrackRanks() {
+        rankManager.addRank(Rank.builder()
+                .id(10)
+                .track("donor")
+                .rankPermissions(List.of("donor.fly"))
+                .level(30)
+                .name("vip")
+                .displayName("VIP")
+                .chatFormat("c10")
+                .build());
+        rankManager.addRank(Rank.builder()
+                .id(11)
+                .track("donor")
+                .rankPermissions(List.of("donor.hat"))
+                .level(50)
+                .name("vip+")
+                .displayName("VIP+")
+                .chatFormat("c11")
+                .build());
+    }
+
     private void addSamplePlayers() {
         rankManager.setPlayer("p10", 1);
         rankManager.setPlayer("p11", 1);
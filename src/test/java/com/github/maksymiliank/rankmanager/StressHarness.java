@@ -0,0 +1,201 @@
+package com.github.maksymiliank.rankmanager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+final class StressHarness {
+
+    @FunctionalInterface
+    interface Operation {
+
+        void run(int thread, long iteration) throws Exception;
+    }
+
+    @FunctionalInterface
+    interface Model {
+
+        boolean admits(int[] observed, long firstState, long secondState);
+    }
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Operation> operations = new ArrayList<>();
+    private final List<Integer> threadCounts = new ArrayList<>();
+
+    StressHarness actor(String name, int threads, Operation operation) {
+        names.add(name);
+        operations.add(operation);
+        threadCounts.add(threads);
+        return this;
+    }
+
+    Result run(String scenario, Duration duration) throws InterruptedException {
+        var stop = new AtomicBoolean();
+        var failure = new AtomicReference<Throwable>();
+        var threads = new ArrayList<Thread>();
+        var counts = new long[operations.size()][];
+
+        int totalThreads = threadCounts.stream().mapToInt(Integer::intValue).sum();
+        var start = new CountDownLatch(1);
+        var ready = new CountDownLatch(totalThreads);
+
+        for (int a = 0; a < operations.size(); a++) {
+            var operation = operations.get(a);
+            var actorCounts = new long[threadCounts.get(a)];
+            counts[a] = actorCounts;
+
+            for (int t = 0; t < actorCounts.length; t++) {
+                int thread = t;
+                threads.add(new Thread(() -> {
+                    ready.countDown();
+                    try {
+                        start.await();
+                        long iteration = 0;
+                        while (!stop.get() && failure.get() == null) {
+                            operation.run(thread, iteration++);
+                        }
+                        actorCounts[thread] = iteration;
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }, scenario + "-" + names.get(a) + "-" + t));
+            }
+        }
+
+        threads.forEach(Thread::start);
+        ready.await();
+        long startNanos = System.nanoTime();
+        start.countDown();
+        Thread.sleep(duration.toMillis());
+        stop.set(true);
+        for (var thread : threads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        var result = new Result(scenario, names, counts, elapsedNanos, failure.get());
+        System.out.println(result);
+        return result;
+    }
+
+    static final class Result {
+
+        private final String scenario;
+        private final List<String> names;
+        private final long[][] counts;
+        private final long elapsedNanos;
+        private final Throwable failure;
+
+        private Result(String scenario, List<String> names, long[][] counts, long elapsedNanos, Throwable failure) {
+            this.scenario = scenario;
+            this.names = List.copyOf(names);
+            this.counts = counts;
+            this.elapsedNanos = elapsedNanos;
+            this.failure = failure;
+        }
+
+        long getOperations(String actor) {
+            long total = 0;
+            for (long count : counts[names.indexOf(actor)]) {
+                total += count;
+            }
+            return total;
+        }
+
+        void rethrowFailure() {
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure != null) {
+                throw new AssertionError("Actor failed in scenario " + scenario, failure);
+            }
+        }
+
+        @Override
+        public String toString() {
+            var sb = new StringBuilder("[stress] ").append(scenario).append(':');
+            double seconds = elapsedNanos / 1e9;
+            for (int a = 0; a < names.size(); a++) {
+                sb.append(' ').append(names.get(a)).append('=')
+                        .append(String.format("%.0f ops/s", getOperations(names.get(a)) / seconds));
+            }
+            return sb.toString();
+        }
+    }
+
+    static final class History {
+
+        private final String name;
+        private final int width;
+        private final int capacity;
+        private final int maxWindow;
+        private final long[][] windows;
+        private final int[][] observations;
+        private final int[] sizes;
+
+        History(String name, int threads, int capacity, int width, int maxWindow) {
+            this.name = name;
+            this.width = width;
+            this.capacity = capacity;
+            this.maxWindow = maxWindow;
+            this.windows = new long[threads][capacity * 2];
+            this.observations = new int[threads][capacity * width];
+            this.sizes = new int[threads];
+        }
+
+        void record(int thread, long before, long after, int... observed) {
+            int size = sizes[thread];
+            if (size < capacity) {
+                windows[thread][size * 2] = before;
+                windows[thread][size * 2 + 1] = after;
+                System.arraycopy(observed, 0, observations[thread], size * width, width);
+                sizes[thread] = size + 1;
+            }
+        }
+
+        int check(Model model) {
+            int checked = 0;
+            int skipped = 0;
+            for (int t = 0; t < sizes.length; t++) {
+                for (int i = 0; i < sizes[t]; i++) {
+                    long before = windows[t][i * 2];
+                    long last = windows[t][i * 2 + 1] + 1;
+                    if (last - before > maxWindow) {
+                        skipped++;
+                        continue;
+                    }
+
+                    var observed = Arrays.copyOfRange(observations[t], i * width, (i + 1) * width);
+                    if (!admitted(model, observed, before, last)) {
+                        throw new AssertionError(String.format(
+                                "%s: reader %d observed %s at %d, not explained by any state in [%d, %d]",
+                                name, t, Arrays.toString(observed), i, before, last));
+                    }
+                    checked++;
+                }
+            }
+
+            System.out.println("[history] " + name + ": checked=" + checked + " skipped=" + skipped);
+            if (checked == 0 || skipped * 10L > checked + skipped) {
+                throw new AssertionError(String.format(
+                        "%s: %d of %d observations had windows wider than %d states",
+                        name, skipped, checked + skipped, maxWindow));
+            }
+            return checked;
+        }
+
+        private static boolean admitted(Model model, int[] observed, long before, long last) {
+            for (long first = before; first <= last; first++) {
+                for (long second = first; second <= last; second++) {
+                    if (model.admits(observed, first, second)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}